@@ -1,9 +1,13 @@
 package game;
 
+import game.controllers.DecisionPointController;
 import game.controllers.Human;
 import game.controllers.PacManController;
 import game.controllers.GhostController;
 import game.controllers.examples.AttractRepelGhosts;
+import game.controllers.examples.CompiledTree;
+import game.controllers.examples.DecisionTreeLearner;
+import game.controllers.examples.TreeEnsemble;
 import game.controllers.examples.Legacy;
 import game.controllers.examples.Legacy2TheReckoning;
 import game.controllers.examples.NearestPillPacMan;
@@ -12,12 +16,39 @@ import game.controllers.examples.RandomGhosts;
 import game.controllers.examples.RandomNonRevPacMan;
 import game.controllers.examples.RandomPacMan;
 import game.controllers.examples.MyGhosts;
+import game.core.FlightRecorder;
 import game.core.G;
+import game.core.Game;
+import game.core.GamePool;
 import game.core.GameView;
+import game.core.HeatmapCollector;
 import game.core._G_;
 import game.core.Replay;
+import game.core.ReplayCatalog;
+import game.core.ReplayDiff;
+import game.core.ReplayExporter;
+import game.core.ReplayPlayer;
+import game.core.ReplayVerifier;
+import game.core.ReplayWriter;
+import game.core.SeedReplay;
+import game.core.WebReplayRecorder;
 import game.core._RG_;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 /*
  * This class may be used to execute the game in timed or un-timed modes, with or without
  * visuals. Competitors should implement their controllers in game.entries.ghosts and 
@@ -33,9 +64,28 @@ public class Exec{
 		//this can be used for numerical testing (non-visual, no delays)
 //		exec.runExperiment(new RandomPacMan(),new AttractRepelGhosts(true),100);
 		
+		//same, but controllers that implement DecisionPointController are only called when they have a choice to make
+//		exec.runExperiment(new RandomNonRevPacMan(),new MyGhosts(),100,true);
+		
+		//this measures the cost of copy() followed by advanceGame(-), as used by search controllers
+//		exec.runForwardModelBenchmark(50,200000,true);
+		
+		//check and time the decision tree of MyGhosts compiled into a lookup table
+//		exec.runDecisionTreeBenchmark("Default.txt",10000000);
+		
+		//learn a tree for MyGhosts from the games (with some random decisions) in which Ms Pac-Man scored at most 3000 points
+//		exec.trainDecisionTree(NearestPillPacMan.class.getName(),"Default.txt",200,0.2,3000,100,"game/controllers/examples/DecisionTrees/Learned.txt");
+		
+		//same with an ensemble of 25 bagged trees, which MyGhosts plays with when given a file ending in .ens (e.g., with the arguments useAI Bagged.ens)
+//		exec.trainEnsemble(NearestPillPacMan.class.getName(),"Default.txt",200,0.2,3000,100,25,false,"game/controllers/examples/DecisionTrees/Bagged.ens");
+//		exec.runDecisionTreeBenchmark("Bagged.ens",10000000);
+		
 		//run game without time limits (un-comment if required)
 //		exec.runGame(new RandomPacMan(),new RandomGhosts(),true,G.DELAY);
 		
+		//the display is refreshed independently of the game, which may therefore be fast-forwarded with live visuals
+//		exec.runGame(new NearestPillPacMan(),new Legacy(),true,0);
+		
 		//run game with time limits (un-comment if required)
 //		exec.runGameTimed(new Human(),new AttractRepelGhosts(true),true);
 		//run game with time limits. Here NearestPillPacManVS is chosen to illustrate how to use graphics for debugging/information purposes 
@@ -53,7 +103,7 @@ public class Exec{
 				String ai = args[1];
 				boolean[] tmp = new boolean[4];
 				Arrays.fill(tmp, true);
-				exec.runGameTimed(new Human(), new MyGhosts(true, tmp, ai+".txt"), true);
+				exec.runGameTimed(new Human(), new MyGhosts(true, tmp, ai.endsWith(".ens") ? ai : ai+".txt"), true);
 			}
 		}
 
@@ -62,14 +112,54 @@ public class Exec{
 		//and replay them in visual mode to see what is happening.
 //		exec.runGameTimedAndRecorded(new Human(),new AttractRepelGhosts(false),true,"human-v-Legacy2.txt");
 //		exec.replayGame("human-v-Legacy2.txt");
+		
+		//same, using the compact binary format (games are streamed to disk as they are played)
+//		exec.runGameTimedAndRecorded(new Human(),new AttractRepelGhosts(false),true,"human-v-Legacy2.mpr");
+//		exec.replayGame("human-v-Legacy2.mpr");
+		
+		//replays may be started at any time step (binary replays store keyframes to get there quickly)
+//		exec.replayGame("human-v-Legacy2.mpr",5000);
+		
+		//keep the last time steps of every game in memory and save them when Ms Pac-Man loses a life or a controller times out
+//		exec.setFlightRecorder(new FlightRecorder("incidents/game").addTrigger(FlightRecorder.onDeath()));
+		
+		//check that all replays in a directory still reproduce the recorded games (e.g., after changing the engine)
+//		exec.verifyReplays("replays");
+		
+		//render replays without a display, as numbered PNG files (every 4th time step) or as a single sprite sheet
+//		exec.exportReplays("replays","frames",4);
+//		exec.exportReplaySheet("human-v-Legacy2.mpr","human-v-Legacy2.png",100,10);
+		
+		//find where two replays of the same game start to differ (e.g., after changing a controller)
+//		exec.diffReplays("before.mpr","after.mpr");
+		
+		//index recorded games and query them (e.g., games MyGhosts won on the third maze before level 3)
+//		exec.queryCatalog("replays/catalog.idx","replays","MyGhosts",2,3);
+		
+		//keep a corpus of games as seeds only (deterministic controllers) and check that they are still reproduced
+//		exec.recordSeedReplays(NearestPillPacMan.class.getName(),Legacy2TheReckoning.class.getName(),100,"corpus.txt");
+//		exec.verifySeedReplays("corpus.txt");
+		
+		//count where Ms Pac-Man dies over many games (written as CSV) and show it on top of the mazes
+//		HeatmapCollector heatmap=exec.runHeatmapExperiment(NearestPillPacMan.class.getName(),Legacy2TheReckoning.class.getName(),10000,"deaths.csv");
+//		GameView.setOverlay(heatmap,HeatmapCollector.DEATHS);
+//		exec.runGame(new NearestPillPacMan(),new Legacy2TheReckoning(),true,G.DELAY);
+		
+		//resume a recorded game at a given time step with other controllers (each branch needs its own controllers)
+//		exec.runBranches("human-v-Legacy2.mpr",5000,new PacManController[]{new NearestPillPacMan(),new RandomNonRevPacMan()},
+//				new GhostController[]{new MyGhosts(),new MyGhosts()});
 	}
 	
-    protected int pacDir;
-    protected int[] ghostDirs;
+    protected volatile int pacDir;
+    protected volatile int[] ghostDirs;
+    protected volatile Game snapshot;	//read-only view of the current time step, shared by both controllers
     protected _G_ game;
+    protected ReplayCatalog catalog;	//if set, recorded games are added to it
+    protected FlightRecorder flightRecorder;	//if set, keeps the last time steps of the games played
     protected PacMan pacMan;
     protected Ghosts ghosts;
-    protected boolean pacmanPlayed,ghostsPlayed;
+    protected volatile boolean pacmanPlayed,ghostsPlayed;
+    protected volatile int pacManReplyTime=-1,ghostsReplyTime=-1;	//time step of the snapshot each controller replied to last
 
     /*
      * For running multiple games without visuals. This is useful to get a good idea of how well a controller plays
@@ -78,22 +168,163 @@ public class Exec{
      * idea of how well the controller is likely to do in the competition.
      */
     public void runExperiment(PacManController pacManController,GhostController ghostController,int trials){
+    	runExperiment(pacManController,ghostController,trials,false);
+    }
+    
+    /*
+     * Same as above. If decisionPointsOnly is set, controllers that implement DecisionPointController are only
+     * called when they have a decision to make (see Scheduler); the number of calls skipped is printed at the end.
+     */
+    public void runExperiment(PacManController pacManController,GhostController ghostController,int trials,boolean decisionPointsOnly){
     	double avgScore=0;
 		game=new _G_();
+		attachFlightRecorder(pacManController,ghostController);
+		Scheduler scheduler=new Scheduler(pacManController,ghostController,decisionPointsOnly);
 		
 		for(int i=0;i<trials;i++){
 			game.newGame();
+			scheduler.newGame();
 			
-			while(!game.gameOver()){
-				long due=System.currentTimeMillis()+G.DELAY;
-		        game.advanceGame(pacManController.getAction(game.copy(),due),ghostController.getActions(game.copy(),due));
-			}
+			while(!game.gameOver())
+				scheduler.advanceGame(game,System.currentTimeMillis()+G.DELAY);
 			
 			avgScore+=game.getScore();
 			System.out.println(game.getScore());
 		}
 		
 		System.out.println(avgScore/trials);
+		
+		if(decisionPointsOnly)
+			System.out.println(scheduler);
+    }
+
+    /*
+     * Measures the cost of the forward model as used by search controllers: chains of copy() followed by
+     * advanceGame(-) of depth 1 to maxDepth, started from states sampled along a game played by random
+     * controllers. Prints the average time per chain and per step (in nanoseconds) for every depth. If pooled
+     * is set, the copies are recycled through GamePool instead of being allocated.
+     */
+    public void runForwardModelBenchmark(int maxDepth,int chains,boolean pooled){
+    	_G_ game=new _G_();
+    	game.newGame();
+    	
+    	Game[] starts=new Game[64];
+    	
+    	for(int i=0;i<starts.length;i++){
+    		for(int j=0;j<25 && !game.gameOver();j++)
+    			game.advanceGame(G.rnd.nextInt(4),null);
+    		
+    		if(game.gameOver())
+    			game.newGame();
+    		
+    		starts[i]=game.copy();
+    	}
+    	
+    	int[] ghostDirs=new int[G.NUM_GHOSTS];
+    	long checksum=0;
+    	
+    	for(int warmup=0;warmup<2;warmup++)
+	    	for(int depth=1;depth<=maxDepth;depth++){
+	    		long start=System.nanoTime();
+	    		
+	    		for(int i=0;i<chains;i++){
+	    			Game state=starts[i%starts.length];
+	    			
+	    			for(int j=0;j<depth;j++){
+	    				if(pooled){
+	    					Game next=GamePool.copy(state);
+	    					
+	    					if(j>0)
+	    						GamePool.release(state);
+	    					
+	    					state=next;
+	    				}
+	    				else
+	    					state=state.copy();
+	    				
+	    				ghostDirs[j%G.NUM_GHOSTS]=j&3;
+	    				state.advanceGame((i+j)&3,ghostDirs);
+	    			}
+	    			
+	    			checksum+=state.getScore();
+	    			
+	    			if(pooled)
+	    				GamePool.release(state);
+	    		}
+	    		
+	    		long elapsed=System.nanoTime()-start;
+	    		
+	    		if(warmup==1)
+	    			System.out.println(depth+"\t"+(elapsed/chains)+"\t"+(elapsed/((long)chains*depth)));
+	    	}
+    	
+    	System.out.println("checksum: "+checksum);
+    }
+
+    /*
+     * Checks that the compiled decision tree of MyGhosts (see CompiledTree) makes the same decisions as the tree
+     * it was compiled from, for every combination of the attributes tested, and prints the time per decision
+     * (in nanoseconds) of the tree, the flat arrays and the compiled tree.
+     */
+    public void runDecisionTreeBenchmark(String treeFileName,int decisions){
+    	MyGhosts ghosts=new MyGhosts(false,new boolean[4],treeFileName);
+    	
+    	System.out.println("mismatches: "+ghosts.checkCompiledTree());
+    	
+    	double[] nanos=ghosts.benchmarkTree(decisions);
+    	
+    	if(nanos.length==2)		//an ensemble of trees
+    		System.out.println("votes\t"+nanos[0]+"\ncompiled\t"+nanos[1]+"\nper time step (4 ghosts)\t"+4*nanos[1]);
+    	else
+    		System.out.println("tree\t"+nanos[0]+"\nflat\t"+nanos[1]+"\ncompiled\t"+nanos[2]);
+    }
+
+    /*
+     * Learns a decision tree for MyGhosts (see DecisionTreeLearner) from the decisions of the ghosts in games
+     * played with the tree given against the Ms Pac-Man controller given (by class name), keeping the games in
+     * which Ms Pac-Man scores at most maxScore, and writes it to the file specified (e.g., in the folder of the
+     * decision trees, to be played with the argument useAI).
+     */
+    public void trainDecisionTree(String pacManName,String treeFileName,int games,double exploration,int maxScore,int minExamples,String fileName){
+    	DecisionTreeLearner learner=new DecisionTreeLearner(Runtime.getRuntime().availableProcessors());
+    	
+    	try{
+    		long start=System.currentTimeMillis();
+    		int kept=learner.collect(pacManName,treeFileName,games,exploration,maxScore);
+    		System.out.println(learner.size()+" examples from "+kept+"/"+games+" games in "+(System.currentTimeMillis()-start)+" ms");
+    		
+    		start=System.currentTimeMillis();
+    		CompiledTree tree=learner.learn(minExamples);
+    		System.out.println("tree learned in "+(System.currentTimeMillis()-start)+" ms, accuracy "+learner.accuracy(tree));
+    		
+    		tree.write(fileName);
+    	}
+    	catch(Exception e){
+    		e.printStackTrace();
+    	}
+    }
+
+    /*
+     * Same as above for an ensemble of trees learned by bagging or boosting (see TreeEnsemble); MyGhosts plays
+     * with the ensemble if the file specified is in the folder of the decision trees and ends in .ens.
+     */
+    public void trainEnsemble(String pacManName,String treeFileName,int games,double exploration,int maxScore,int minExamples,int numTrees,boolean boosted,String fileName){
+    	DecisionTreeLearner learner=new DecisionTreeLearner(Runtime.getRuntime().availableProcessors());
+    	
+    	try{
+    		long start=System.currentTimeMillis();
+    		int kept=learner.collect(pacManName,treeFileName,games,exploration,maxScore);
+    		System.out.println(learner.size()+" examples from "+kept+"/"+games+" games in "+(System.currentTimeMillis()-start)+" ms");
+    		
+    		start=System.currentTimeMillis();
+    		TreeEnsemble ensemble=boosted ? learner.learnBoosted(numTrees,minExamples) : learner.learnBagged(numTrees,minExamples,G.rnd.nextLong());
+    		System.out.println(ensemble.size()+" trees learned in "+(System.currentTimeMillis()-start)+" ms, accuracy "+learner.accuracy(ensemble));
+    		
+    		ensemble.write(fileName);
+    	}
+    	catch(Exception e){
+    		e.printStackTrace();
+    	}
     }
 
     /*
@@ -104,6 +335,7 @@ public class Exec{
      */
 	public void runGame(PacManController pacManController,GhostController ghostController,boolean visual,int delay){
 		game=new _G_();
+		attachFlightRecorder(pacManController,ghostController);
 		game.newGame();
 
 		GameView gv=null;
@@ -113,12 +345,13 @@ public class Exec{
 		
 		while(!game.gameOver()){
 			long due=System.currentTimeMillis()+G.DELAY;
-	        game.advanceGame(pacManController.getAction(game.copy(),due),ghostController.getActions(game.copy(),due));
+			Game snapshot=game.snapshot();
+	        game.advanceGame(pacManController.getAction(snapshot,due),ghostController.getActions(snapshot,due));
 
 	        try{Thread.sleep(delay);}catch(Exception e){}
 
 	        if(visual)
-	        	gv.repaint();
+	        	gv.publish();
 		}
 	}
 	
@@ -128,6 +361,7 @@ public class Exec{
      */
 	public void runGameTimed(PacManController pacManController,GhostController ghostController,boolean visual){
 		game=new _G_();
+		attachFlightRecorder(pacManController,ghostController);
 		game.newGame();
 		pacMan=new PacMan(pacManController);
 		ghosts=new Ghosts(ghostController);
@@ -141,6 +375,8 @@ public class Exec{
 				gv.getFrame().addKeyListener((Human)pacManController);
 		}		
 		while(!game.gameOver()){
+			snapshot=game.snapshot();
+			pacmanPlayed=ghostsPlayed=false;
 			pacMan.alert();
 			ghosts.alert();
 			try{
@@ -151,17 +387,49 @@ public class Exec{
 			}
 
 	        game.advanceGame(pacDir,ghostDirs);
+	        checkTimeouts();
 	        if(visual)
-	        	gv.repaint();
+	        	gv.publish();
 		}
 		
 		pacMan.kill();
 		ghosts.kill();
 	}
 	
+	/*
+	 * Plays a game without visuals or delays and streams it to the file specified in the format of the javascript replays
+	 * of the web-site (see WebReplayRecorder). With deltas, most frames only list the pills eaten.
+	 */
+	public void runGameRecordedForWeb(PacManController pacManController,GhostController ghostController,String fileName,boolean deltas){
+		game=new _G_();
+		game.newGame();
+		Scheduler scheduler=new Scheduler(pacManController,ghostController,false);
+		
+		try{
+			Writer out=new BufferedWriter(new FileWriter(fileName));
+			
+			try{
+				game.setRecorder(new WebReplayRecorder(out,deltas));
+				game.monitorGame();
+				
+				while(!game.gameOver()){
+					scheduler.advanceGame(game,System.currentTimeMillis()+G.DELAY);
+					game.monitorGame();
+				}
+			}
+			finally{
+				out.close();
+			}
+		}
+		catch(IOException e){
+			e.printStackTrace();
+		}
+	}
+	
 	/*
 	 * Runs a game and records all directions taken by all controllers - the data may then be used to replay any game saved using
-	 * replayGame(-).
+	 * replayGame(-). If the file name ends in ReplayWriter.BINARY_EXTENSION, the game is streamed to disk in the compact binary
+	 * format as it progresses, with keyframes for seeking; otherwise the text format is written after every level.
 	 */
 	public void runGameTimedAndRecorded(PacManController pacManController,GhostController ghostController,boolean visual,String fileName){
 		StringBuilder history=new StringBuilder();
@@ -169,7 +437,23 @@ public class Exec{
 		boolean firstWrite=false;	//this makes sure the content of any existing files is overwritten
 		
 		game=new _G_();
+		attachFlightRecorder(pacManController,ghostController);
 		game.newGame();
+		
+		ReplayWriter writer=null;
+		
+		if(ReplayWriter.isBinary(fileName)){
+			try{
+				writer=new ReplayWriter(fileName,game.getSeed(),game.getCurMaze(),getName(pacManController),getName(ghostController));
+			}
+			catch(IOException e){
+				e.printStackTrace();
+				return;
+			}
+		}
+		
+		boolean binary=writer!=null;
+		
 		pacMan=new PacMan(pacManController);
 		ghosts=new Ghosts(ghostController);
 		
@@ -183,6 +467,8 @@ public class Exec{
 		}		
 		
 		while(!game.gameOver()){
+			snapshot=game.snapshot();
+			pacmanPlayed=ghostsPlayed=false;
 			pacMan.alert();
 			ghosts.alert();
 
@@ -194,9 +480,25 @@ public class Exec{
 			}
 
 	        int[] actionsTaken=game.advanceGame(pacDir,ghostDirs);
+	        checkTimeouts();
 
 	        if(visual)
-	        	gv.repaint();
+	        	gv.publish();
+	        
+	        //a frame that is not written would shift all later actions, so the recording stops at the first error
+	        if(binary){
+	        	if(writer!=null){
+	        		try{
+	        			writer.writeFrame(actionsTaken,game);
+	        		}
+	        		catch(IOException e){
+	        			discardRecording(writer,fileName,e);
+	        			writer=null;
+	        		}
+	        	}
+	        	
+	        	continue;
+	        }
 
 	        history=addActionsToString(history,actionsTaken,game.getCurLevel()==lastLevel);
 	
@@ -209,36 +511,382 @@ public class Exec{
         	}
 		}
 		
-		//save the final actions
-		Replay.saveActions(history.toString(),fileName,firstWrite);
+		//save the final actions, followed by the outcome of the game
+		if(writer!=null){
+			try{
+				writer.writeSummary(game);
+				writer.close();
+			}
+			catch(IOException e){
+				discardRecording(writer,fileName,e);
+				writer=null;
+			}
+		}
+		else if(!binary)
+			Replay.saveActions(history.append(Replay.getSummary(game)).append("\n").toString(),fileName,firstWrite);
+		
+		if(catalog!=null && (!binary || writer!=null)){
+			try{
+				catalog.add(fileName);
+			}
+			catch(IOException e){
+				e.printStackTrace();
+			}
+		}
 		
 		pacMan.kill();
 		ghosts.kill();
 	}
 	
+	//closes a binary replay that could not be written and deletes the partial file
+	private static void discardRecording(ReplayWriter writer,String fileName,IOException cause){
+		System.out.println("Could not record "+fileName+", the replay is deleted: "+cause);
+		
+		try{
+			writer.close();
+		}
+		catch(IOException e){}
+		
+		new File(fileName).delete();
+	}
+	
 	/*
 	 * This is used to replay a recorded game. The controllers are given by the class Replay which may
 	 * also be used to load the actions from file.
 	 */
 	public void replayGame(String fileName){
-		_RG_ game=new _RG_();
-		game.newGame();
-
-		Replay replay=new Replay(fileName);
-		PacManController pacManController=replay.getPacMan();
-		GhostController ghostController=replay.getGhosts();
+		replayGame(fileName,0);
+	}
+	
+	/*
+	 * Replays a recorded game starting at the time step specified. The replay may be controlled from the
+	 * keyboard (see ReplayControls); seeking uses the keyframes of the replay, if it has any.
+	 */
+	public void replayGame(String fileName,int startTime){
+		ReplayPlayer player;
 		
-		GameView gv=new GameView(game).showGame();
+		try{
+			player=new ReplayPlayer(fileName);
+			player.seek(startTime);
+		}
+		catch(IOException e){
+			e.printStackTrace();
+			return;
+		}
 		
-		while(!game.gameOver()){
-	        game.advanceGame(pacManController.getAction(game.copy(),0),ghostController.getActions(game.copy(),0));
-
-	        gv.repaint();
+		ReplayControls controls=new ReplayControls();
+		GameView gv=new GameView(player.getGame()).showGame();
+		gv.getFrame().addKeyListener(controls);
+		
+		System.out.println(ReplayControls.USAGE);
+		
+		try{
+			while(player.hasNext() || controls.isPaused()){
+				int seek=controls.takeSeek();
+				
+				if(seek!=0)
+					player.seek(player.getTime()+seek);
+				else if(!controls.isPaused())
+					player.stepForward();
+	
+		        gv.publish();
+		
+		        try{Thread.sleep(G.DELAY);}catch(Exception e){}
+			}
+			
+			player.close();
+		}
+		catch(IOException e){
+			e.printStackTrace();
+		}
+	}
 	
-	        try{Thread.sleep(G.DELAY);}catch(Exception e){}
+	/*
+	 * Resumes a recorded game at the time step specified: each pair of controllers (pacManControllers[i],ghostControllers[i])
+	 * plays on from that state in its own branch, without visuals or delays, and the branches are played in parallel. The
+	 * controllers must therefore not be shared between branches. Returns the games at the end of each branch.
+	 */
+	public _G_[] runBranches(String fileName,int time,PacManController[] pacManControllers,GhostController[] ghostControllers){
+		ReplayPlayer player;
+		
+		try{
+			player=new ReplayPlayer(fileName);
+			player.seek(time);
+			player.close();
+		}
+		catch(IOException e){
+			e.printStackTrace();
+			return null;
+		}
+		
+		System.out.println("branching at "+player.getTime()+": score "+player.getGame().getScore()+", level "+(player.getGame().getCurLevel()+1));
+		
+		final _G_[] branches=new _G_[pacManControllers.length];
+		ExecutorService executor=Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		List<Future<?>> futures=new ArrayList<Future<?>>();
+		
+		for(int i=0;i<branches.length;i++){
+			final _G_ branch=player.branch();
+			final Scheduler scheduler=new Scheduler(pacManControllers[i],ghostControllers[i],false);
+			branches[i]=branch;
+			
+			futures.add(executor.submit(new Runnable(){
+				public void run(){
+					while(!branch.gameOver())
+						scheduler.advanceGame(branch,System.currentTimeMillis()+G.DELAY);
+				}
+			}));
+		}
+		
+		try{
+			for(Future<?> future : futures)
+				future.get();
 		}
+		catch(Exception e){
+			e.printStackTrace();
+		}
+		finally{
+			executor.shutdown();
+		}
+		
+		for(int i=0;i<branches.length;i++)
+			System.out.println(getName(pacManControllers[i])+" vs "+getName(ghostControllers[i])+": score "+branches[i].getScore()
+					+", level "+(branches[i].getCurLevel()+1)+", time "+branches[i].getTotalTime());
+		
+		return branches;
 	}
 	
+	/*
+	 * Plays the number of games specified without visuals or delays, spread over one thread per processor (each with
+	 * new instances of the controllers given by class name), and counts where things happen on the mazes (see
+	 * HeatmapCollector). The counts of all threads are merged and, if a file name is given, written as CSV.
+	 */
+	public HeatmapCollector runHeatmapExperiment(final String pacManName,final String ghostName,int trials,String fileName){
+		int numThreads=Runtime.getRuntime().availableProcessors();
+		ExecutorService executor=Executors.newFixedThreadPool(numThreads);
+		List<Future<HeatmapCollector>> futures=new ArrayList<Future<HeatmapCollector>>();
+		HeatmapCollector heatmap=new HeatmapCollector();
+		long start=System.currentTimeMillis();
+		
+		for(int i=0;i<numThreads;i++){
+			final int games=trials/numThreads+(i<trials%numThreads ? 1 : 0);
+			
+			futures.add(executor.submit(new Callable<HeatmapCollector>(){
+				public HeatmapCollector call() throws ReflectiveOperationException{
+					HeatmapCollector collector=new HeatmapCollector();
+					PacManController pacManController=(PacManController)Class.forName(pacManName).getDeclaredConstructor().newInstance();
+					GhostController ghostController=(GhostController)Class.forName(ghostName).getDeclaredConstructor().newInstance();
+					Scheduler scheduler=new Scheduler(pacManController,ghostController,false);
+					_G_ game=new _G_();
+					game.addListener(collector);
+					
+					for(int j=0;j<games;j++){
+						game.newGame();
+						scheduler.newGame();
+						
+						while(!game.gameOver())
+							scheduler.advanceGame(game,System.currentTimeMillis()+G.DELAY);
+					}
+					
+					return collector;
+				}
+			}));
+		}
+		
+		try{
+			for(Future<HeatmapCollector> future : futures)
+				heatmap.merge(future.get());
+			
+			if(fileName!=null)
+				heatmap.writeCsv(fileName);
+		}
+		catch(Exception e){
+			e.printStackTrace();
+		}
+		finally{
+			executor.shutdown();
+		}
+		
+		System.out.println(heatmap.getNumGames()+" games in "+(System.currentTimeMillis()-start)+" ms");
+		
+		return heatmap;
+	}
+	
+	/*
+	 * Plays the number of games specified with new instances of the controllers given (by class name) and random seeds,
+	 * and appends their seed replays to the file specified (see SeedReplay).
+	 */
+	public void recordSeedReplays(String pacManName,String ghostName,int trials,String fileName){
+		List<SeedReplay> replays=new ArrayList<SeedReplay>();
+		
+		try{
+			for(int i=0;i<trials;i++){
+				SeedReplay replay=SeedReplay.record(pacManName,ghostName,G.rnd.nextLong(),G.rnd.nextLong());
+				System.out.println(replay);
+				replays.add(replay);
+			}
+			
+			SeedReplay.save(replays,fileName,true);
+		}
+		catch(Exception e){
+			e.printStackTrace();
+		}
+	}
+	
+	/*
+	 * Plays all seed replays in the file specified again and lists those that no longer end with the recorded
+	 * score, time and level.
+	 */
+	public void verifySeedReplays(String fileName){
+		try{
+			List<SeedReplay> replays=SeedReplay.load(fileName);
+			int failed=0;
+			
+			for(SeedReplay replay : replays){
+				_G_ game=replay.play(null);
+				
+				if(!replay.matches(game)){
+					System.out.println(replay+"\tFAILED\treplayed "+game.getScore()+"\t"+game.getTotalTime()+"\t"+game.getCurLevel());
+					failed++;
+				}
+			}
+			
+			System.out.println(replays.size()+" seed replays verified, "+failed+" failed");
+		}
+		catch(Exception e){
+			e.printStackTrace();
+		}
+	}
+	
+	/*
+	 * Prints the first time step at which two replays differ, with the states and actions of both (see ReplayDiff)
+	 */
+	public void diffReplays(String fileName1,String fileName2){
+		try{
+			System.out.println(ReplayDiff.diff(fileName1,fileName2));
+		}
+		catch(IOException e){
+			e.printStackTrace();
+		}
+	}
+	
+	/*
+	 * Games played from now on keep their last time steps in the recorder supplied (null to stop), which saves them
+	 * when one of its triggers fires. In timed games, it is also triggered when a controller misses the deadline.
+	 */
+	public void setFlightRecorder(FlightRecorder flightRecorder){
+		this.flightRecorder=flightRecorder;
+	}
+	
+	private void attachFlightRecorder(PacManController pacManController,GhostController ghostController){
+		if(flightRecorder!=null){
+			flightRecorder.setControllerNames(getName(pacManController),getName(ghostController));
+			game.setFlightRecorder(flightRecorder);
+		}
+	}
+	
+	//dumps the time steps recorded if a controller did not reply to the current snapshot before the game was advanced
+	//(a late reply to an earlier one does not count)
+	private void checkTimeouts(){
+		int time=snapshot.getTotalTime();
+		
+		if(flightRecorder!=null && (pacManReplyTime!=time || ghostsReplyTime!=time))
+			flightRecorder.trigger(pacManReplyTime!=time ? "timeout-pacman" : "timeout-ghosts");
+	}
+	
+	//Games recorded with runGameTimedAndRecorded(-) are added to the catalog supplied (null to stop)
+	public void setCatalog(ReplayCatalog catalog){
+		this.catalog=catalog;
+	}
+	
+	/*
+	 * Lists the games in the catalog in which the ghosts specified beat Ms Pac-Man on the maze given before the level
+	 * given, highest score first (see ReplayCatalog.Query for other queries). Replays in the directory specified that
+	 * are not in the catalog yet are added first.
+	 */
+	public void queryCatalog(String indexFileName,String directory,String ghostName,int maze,int level){
+		try{
+			ReplayCatalog catalog=new ReplayCatalog(indexFileName);
+			catalog.scan(directory);
+			
+			long start=System.nanoTime();
+			int[] rows=catalog.query().ghosts(ghostName).maze(maze).maxLevel(level-1).pacManLost().sortBy(ReplayCatalog.SCORE,false).run();
+			long elapsed=System.nanoTime()-start;
+			
+			for(int row : rows)
+				System.out.println(catalog.toString(row));
+			
+			System.out.println(rows.length+" of "+catalog.getNumRows()+" replays ("+elapsed/1000+" us)");
+			catalog.close();
+		}
+		catch(IOException e){
+			e.printStackTrace();
+		}
+	}
+	
+	/*
+	 * Checks that the replays in the directory specified still reproduce the games they recorded (see ReplayVerifier).
+	 * Replays are played headless on all cores; failures are listed, followed by the throughput.
+	 */
+	public void verifyReplays(String directory){
+		long start=System.currentTimeMillis();
+		List<ReplayVerifier.Result> results;
+		
+		try{
+			results=new ReplayVerifier(Runtime.getRuntime().availableProcessors()).verifyDirectory(directory);
+		}
+		catch(InterruptedException e){
+			e.printStackTrace();
+			return;
+		}
+		
+		long elapsed=Math.max(1,System.currentTimeMillis()-start);
+		int failed=0;
+		
+		for(ReplayVerifier.Result result : results){
+			if(!result.valid){
+				System.out.println(result);
+				failed++;
+			}
+		}
+		
+		System.out.println(results.size()+" replays verified, "+failed+" failed, "+(results.size()*1000/elapsed)+" replays/sec");
+	}
+	
+	//renders every step-th frame of all replays in the directory specified to PNG files, one sub-directory per replay
+	public void exportReplays(String directory,String outputDirectory,int step){
+		long start=System.currentTimeMillis();
+		int numFrames;
+		
+		try{
+			numFrames=new ReplayExporter(Runtime.getRuntime().availableProcessors()).exportDirectory(directory,outputDirectory,step);
+		}
+		catch(Exception e){
+			e.printStackTrace();
+			return;
+		}
+		
+		long elapsed=Math.max(1,System.currentTimeMillis()-start);
+		
+		System.out.println(numFrames+" frames exported, "+(numFrames*1000L/elapsed)+" frames/sec");
+	}
+	
+	//renders every step-th frame of a replay into a single image with the number of columns specified
+	public void exportReplaySheet(String fileName,String imageFileName,int step,int columns){
+		try{
+			int numFrames=new ReplayExporter(Runtime.getRuntime().availableProcessors()).exportSheet(fileName,imageFileName,step,columns);
+			System.out.println(numFrames+" frames written to "+imageFileName);
+		}
+		catch(Exception e){
+			e.printStackTrace();
+		}
+	}
+	
+    //the name under which a controller is recorded in a replay
+    private static String getName(Object controller){
+    	return controller.getClass().getName();
+    }
+	
     private StringBuilder addActionsToString(StringBuilder history,int[] actionsTaken,boolean newLine){
     	history.append((game.getTotalTime()-1)+"\t"+actionsTaken[0]+"\t");
 
@@ -251,30 +899,175 @@ public class Exec{
         return history;
     }
 	
+	/*
+	 * Keyboard controls for replays: SPACE pauses/resumes, LEFT/RIGHT step back/forward by one time step
+	 * (pausing the replay), PAGE UP/PAGE DOWN seek back/forward by SEEK_STEP time steps, HOME restarts.
+	 */
+	public static class ReplayControls extends KeyAdapter{
+		public static final int SEEK_STEP=1000;
+		public static final String USAGE="Replay: SPACE pause, LEFT/RIGHT step, PAGE UP/PAGE DOWN seek "+SEEK_STEP+" steps, HOME restart";
+		
+		private volatile boolean paused;
+		private final AtomicInteger seek=new AtomicInteger();
+		
+		public boolean isPaused(){
+			return paused;
+		}
+		
+		//returns the number of time steps to move by (requested since the last call) and resets it
+		public int takeSeek(){
+			return seek.getAndSet(0);
+		}
+		
+		public void keyPressed(KeyEvent e){
+			switch(e.getKeyCode()){
+				case KeyEvent.VK_SPACE: paused=!paused; break;
+				case KeyEvent.VK_RIGHT: paused=true; seek.addAndGet(1); break;
+				case KeyEvent.VK_LEFT: paused=true; seek.addAndGet(-1); break;
+				case KeyEvent.VK_PAGE_DOWN: seek.addAndGet(SEEK_STEP); break;
+				case KeyEvent.VK_PAGE_UP: seek.addAndGet(-SEEK_STEP); break;
+				case KeyEvent.VK_HOME: seek.set(Integer.MIN_VALUE/2); break;
+			}
+		}
+	}
+	
 	//sets the latest direction to take for each game step (if controller replies in time)
 	public void setGhostDirs(int[] ghostDirs){
 		this.ghostDirs=ghostDirs;
 		this.ghostsPlayed=true;
 	}
 	
+	//same as above, for the snapshot of the time step given (see checkTimeouts())
+	private void setGhostDirs(int[] ghostDirs,int time){
+		setGhostDirs(ghostDirs);
+		this.ghostsReplyTime=time;
+	}
+	
 	//sets the latest direction to take for each game step (if controller replies in time)
 	public void setPacDir(int pacDir){
 		this.pacDir=pacDir;
 		this.pacmanPlayed=true;
 	}
 	
+	//same as above, for the snapshot of the time step given (see checkTimeouts())
+	private void setPacDir(int pacDir,int time){
+		setPacDir(pacDir);
+		this.pacManReplyTime=time;
+	}
+	
+	/*
+	 * Queries the controllers of an un-timed game and advances it. With decision-point scheduling, a controller
+	 * that implements DecisionPointController is not called if it has no decision to make (Ms Pac-Man: not
+	 * pacManRequiresAction(); ghosts: no ghostRequiresAction(-)). Ms Pac-Man then continues in her current
+	 * direction and the ghosts are given the directions returned last, which are ignored or replaced by the only
+	 * legal move (the game draws that move from its random generator if neither the direction given nor the one
+	 * taken last is legal, so the later random events can differ from an unscheduled game). Both controllers are
+	 * always called after a reset (a life lost or a new level), as the agents are back at their initial positions
+	 * and the directions returned before no longer apply. The calls made and skipped are counted for each
+	 * controller.
+	 */
+	public static class Scheduler {
+		private final PacManController pacManController;
+		private final GhostController ghostController;
+		private final boolean skipPacMan,skipGhosts;
+		private int[] lastGhostDirs;
+		private boolean pacManCalled;
+		private int lastLevel,lastLives;
+		private long pacManCalls,pacManSkips,ghostCalls,ghostSkips;
+		
+		public Scheduler(PacManController pacManController,GhostController ghostController,boolean decisionPointsOnly) {
+			this.pacManController=pacManController;
+			this.ghostController=ghostController;
+			this.skipPacMan=decisionPointsOnly && pacManController instanceof DecisionPointController;
+			this.skipGhosts=decisionPointsOnly && ghostController instanceof DecisionPointController;
+		}
+		
+		//forgets the directions of the previous game (the counters are kept)
+		public void newGame() {
+			pacManCalled=false;
+			lastGhostDirs=null;
+		}
+		
+		//queries the controllers (if required) and advances the game; returns the actions taken
+		public int[] advanceGame(_G_ game,long due) {
+			boolean reset=game.getCurLevel()!=lastLevel || game.getLivesRemaining()!=lastLives;
+			boolean callPacMan=!skipPacMan || !pacManCalled || reset || game.pacManRequiresAction();
+			boolean callGhosts=!skipGhosts || lastGhostDirs==null || reset || ghostsRequireAction(game);
+			int pacDir=game.getCurPacManDir();
+			
+			lastLevel=game.getCurLevel();
+			lastLives=game.getLivesRemaining();
+			
+			if(callPacMan || callGhosts) {
+				Game snapshot=game.snapshot();
+				
+				if(callPacMan) {
+					pacDir=pacManController.getAction(snapshot,due);
+					pacManCalled=true;
+				}
+				
+				if(callGhosts)
+					lastGhostDirs=ghostController.getActions(snapshot,due);
+			}
+			
+			if(callPacMan)
+				pacManCalls++;
+			else
+				pacManSkips++;
+			
+			if(callGhosts)
+				ghostCalls++;
+			else
+				ghostSkips++;
+			
+			return game.advanceGame(pacDir,lastGhostDirs);
+		}
+		
+		private boolean ghostsRequireAction(Game game) {
+			for(int i=0;i<G.NUM_GHOSTS;i++)
+				if(game.ghostRequiresAction(i))
+					return true;
+			
+			return false;
+		}
+		
+		public String toString() {
+			return "Ms Pac-Man calls skipped: "+pacManSkips+"/"+(pacManCalls+pacManSkips)+", ghost calls skipped: "+ghostSkips+"/"+(ghostCalls+ghostSkips);
+		}
+	}
+	
 	/*
 	 * Wraps the controller in a thread for the timed execution. This class then updates the
 	 * directions for Exec to parse to the game.
 	 */
+	//waits for the latch to be counted down, even if the thread is interrupted
+	private static void awaitUninterruptibly(CountDownLatch latch){
+		boolean interrupted=false;
+		
+		while(latch.getCount()>0){
+			try{
+				latch.await();
+			}
+			catch(InterruptedException e){
+				interrupted=true;
+			}
+		}
+		
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+	
 	public class PacMan extends Thread {
 	    private PacManController pacMan;
 	    private boolean alive;
+	    private final CountDownLatch waiting=new CountDownLatch(1);
 
+	    //returns once the thread waits for the first alert(), which would be lost otherwise
 	    public PacMan(PacManController pacMan) {
 	        this.pacMan=pacMan;
 	        alive=true;
 	        start();
+	        awaitUninterruptibly(waiting);
 	    }
 
 	    public synchronized void kill() {
@@ -290,9 +1083,11 @@ public class Exec{
 	        while(alive){
 	        	try{
 	        		synchronized(this){
+	        			waiting.countDown();	//the monitor is held until wait() releases it
 	        			wait();
 	                }
-	        		setPacDir(pacMan.getAction(game.copy(),System.currentTimeMillis()+G.DELAY));
+	        		Game current=snapshot;
+	        		setPacDir(pacMan.getAction(current,System.currentTimeMillis()+G.DELAY),current.getTotalTime());
 	            }
 	        	catch(InterruptedException e) {
 	                e.printStackTrace();
@@ -308,11 +1103,14 @@ public class Exec{
 	public class Ghosts extends Thread {
 		private GhostController ghosts;
 	    private boolean alive;
+	    private final CountDownLatch waiting=new CountDownLatch(1);
 
+	    //returns once the thread waits for the first alert(), which would be lost otherwise
 	    public Ghosts(GhostController ghosts) {	
 	    	this.ghosts=ghosts;
 	        alive=true;
 	        start();
+	        awaitUninterruptibly(waiting);
 	    }
 
 	    public synchronized void kill() {
@@ -328,10 +1126,12 @@ public class Exec{
 	        while(alive) {
 	        	try {
 	        		synchronized(this){
+	        			waiting.countDown();	//the monitor is held until wait() releases it
 	        			wait();
 	                }
 
-	        		setGhostDirs(ghosts.getActions(game.copy(),System.currentTimeMillis()+G.DELAY));
+	        		Game current=snapshot;
+	        		setGhostDirs(ghosts.getActions(current,System.currentTimeMillis()+G.DELAY),current.getTotalTime());
 	            }
 	        	catch(InterruptedException e) {
 	                e.printStackTrace();
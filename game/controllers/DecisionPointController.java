@@ -0,0 +1,14 @@
+package game.controllers;
+
+/*
+ * Marker interface for controllers whose actions only matter when a choice exists. A ghost controller
+ * implementing it declares that it does not need to be called when no ghost requires an action (see
+ * Game.ghostRequiresAction(-)); a Ms Pac-Man controller declares that it never reverses in a corridor, so
+ * it does not need to be called unless Game.pacManRequiresAction() is true. Runners that support
+ * decision-point scheduling (see Exec.runExperiment(-)) skip these calls: Ms Pac-Man continues in her current
+ * direction and the ghosts re-use the last directions returned.
+ * Controllers that keep track of time should therefore use Game.getTotalTime() rather than count calls.
+ */
+public interface DecisionPointController
+{
+}
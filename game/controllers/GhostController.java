@@ -7,6 +7,8 @@ import game.core.Game;
  * required is getActions(-), which returns the direction to be taken: 
  * Up - Right - Down - Left -> 0 - 1 - 2 - 3
  * Any other number is considered to be a lack of action (Neutral). 
+ * The game supplied is a read-only snapshot that is shared with the opposing controller:
+ * use copy() (or GamePool) to simulate moves.
  */
 public interface GhostController
 {
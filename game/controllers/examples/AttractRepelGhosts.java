@@ -1,10 +1,11 @@
 package game.controllers.examples;
 
 import game.controllers.GhostController;
+import game.controllers.DecisionPointController;
 import game.core.G;
 import game.core.Game;
 
-public final class AttractRepelGhosts implements GhostController
+public final class AttractRepelGhosts implements GhostController,DecisionPointController
 {	
 	private final static float CONSISTENCY=0.9f;	//move towards/away with this probability
 	private boolean attract;
@@ -0,0 +1,265 @@
+package game.controllers.examples;
+
+import 	java.io.*;
+import	java.util.*;
+
+/**
+ * CompiledTree
+ *	A decision tree (in the form read by MyGhosts.DecisionTree.initTree) compiled into flat arrays of ints:
+ *	evaluating it walks the arrays instead of Node objects and allocates nothing. As the attributes tested
+ *	are small discrete values (a node has one child per value), the tree is also turned into a table with
+ *	the result of every combination of the attributes tested, indexed by the packed attribute values, unless
+ *	that table would have more than MAX_TABLE entries. The leaves hold the index of a strategy.
+ *
+ *	The values of the attributes tested must lie within the children of the nodes testing them, as for the
+ *	original tree.
+ */
+public final class CompiledTree{
+
+	public static final int		MAX_TABLE	= 1<<16;		//largest lookup table built
+
+	private final int			root;
+	private final int[]			attribute;					//attribute tested by each node, -1 for leaves
+	private final int[]			first;						//position of the first child of each node in children
+	private final int[]			degree;						//number of children of each node
+	private final int[]			children;					//children of all nodes, one after the other
+	private final int[]			strategy;					//strategy of each leaf, -1 for other nodes
+	private final int[]			tested;						//the attributes tested by the tree
+	private final int[]			domain;						//number of values of each attribute tested
+	private final int[]			stride;						//multiplier of each attribute tested in the table index
+	private final int[]			table;						//strategy of every packed attribute vector (null if too large)
+
+	/**
+	 * @param root			int			: index of the root node
+	 * @param attributes	int[]		: attribute tested by each node (ignored for leaves)
+	 * @param children		int[][]		: children of each node (null for leaves)
+	 * @param strategies	int[]		: strategy of each leaf, -1 for the other nodes
+	 */
+	public CompiledTree(int root, int[] attributes, int[][] children, int[] strategies){
+		int n = strategies.length;
+		int numChildren = 0;
+		int numAttributes = 0;
+
+		for(int i=0; i<n; i++){
+			if(strategies[i] < 0){
+				numChildren += children[i].length;
+				numAttributes = Math.max(numAttributes, attributes[i]+1);
+			}
+		}
+
+		this.root = root;
+		this.attribute = new int[n];
+		this.first = new int[n];
+		this.degree = new int[n];
+		this.children = new int[numChildren];
+		this.strategy = strategies.clone();
+
+		//the domain of an attribute is the largest number of children of a node testing it
+		int[] values = new int[numAttributes];
+		int next = 0;
+
+		for(int i=0; i<n; i++){
+			if(strategies[i] >= 0){
+				attribute[i] = -1;
+				continue;
+			}
+			attribute[i] = attributes[i];
+			first[i] = next;
+			degree[i] = children[i].length;
+			System.arraycopy(children[i], 0, this.children, next, children[i].length);
+			next += children[i].length;
+			values[attributes[i]] = Math.max(values[attributes[i]], children[i].length);
+		}
+
+		int numTested = 0;
+		for(int a=0; a<numAttributes; a++){
+			if(values[a] > 0){
+				numTested++;
+			}
+		}
+
+		this.tested = new int[numTested];
+		this.domain = new int[numTested];
+		this.stride = new int[numTested];
+
+		long size = 1;
+		for(int a=0, j=0; a<numAttributes; a++){
+			if(values[a] > 0){
+				tested[j] = a;
+				domain[j] = values[a];
+				stride[j] = (int)Math.min(size, Integer.MAX_VALUE);
+				size *= values[a];
+				j++;
+			}
+		}
+
+		this.table = size <= MAX_TABLE ? buildTable((int)size, numAttributes) : null;
+	}
+
+	//evaluates the tree for every combination of the attributes tested
+	private int[] buildTable(int size, int numAttributes){
+		int[] result = new int[size];
+		int[] attributes = new int[numAttributes];
+
+		for(int index=0; index<size; index++){
+			unpack(index, attributes);
+			result[index] = walk(attributes);
+		}
+		return result;
+	}
+
+	/**
+	 * @return : the strategy chosen by the tree for the attributes given
+	 */
+	public int evaluate(int[] attributes){
+		if(table == null){
+			return walk(attributes);
+		}
+
+		int index = 0;
+		for(int i=0; i<tested.length; i++){
+			index += attributes[tested[i]] * stride[i];
+		}
+		return table[index];
+	}
+
+	/**
+	 * @return : the strategy chosen by the tree for the attributes given, found by walking the flat arrays
+	 */
+	public int walk(int[] attributes){
+		int node = root;
+
+		while(attribute[node] >= 0){
+			node = children[first[node] + attributes[attribute[node]]];
+		}
+		return strategy[node];
+	}
+
+	/**
+	 * number of packed attribute vectors: the product of the domains of the attributes tested
+	 */
+	public long getNumCombinations(){
+		long size = 1;
+		for(int i=0; i<domain.length; i++){
+			size *= domain[i];
+		}
+		return size;
+	}
+
+	/**
+	 * writes the values of the attributes tested that correspond to the packed index given into the array
+	 * supplied (the other attributes are left untouched)
+	 */
+	public void unpack(long index, int[] attributes){
+		for(int i=0; i<tested.length; i++){
+			attributes[tested[i]] = (int)(index % domain[i]);
+			index /= domain[i];
+		}
+	}
+
+	/**
+	 * writes the tree in the format read by MyGhosts.DecisionTree.initTree
+	 */
+	public void write(String fileName) throws IOException{
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(fileName)));
+		try{
+			write(out);
+		} finally{
+			out.close();
+		}
+	}
+
+	/**
+	 * same as above, to the writer supplied
+	 */
+	public void write(PrintWriter out){
+		int numLeaves = 0;
+		for(int i=0; i<strategy.length; i++){
+			if(attribute[i] < 0){
+				numLeaves++;
+			}
+		}
+
+		out.println(strategy.length+" "+numLeaves+" "+root);
+		for(int i=0; i<strategy.length; i++){
+			if(attribute[i] < 0){
+				out.println(i+" -1 0");
+				continue;
+			}
+			out.print(i+" "+attribute[i]+" "+degree[i]);
+			for(int j=0; j<degree[i]; j++){
+				out.print(" "+children[first[i]+j]);
+			}
+			out.println();
+		}
+		for(int i=0; i<strategy.length; i++){
+			if(attribute[i] < 0){
+				out.println(i+" "+strategy[i]);
+			}
+		}
+	}
+
+	/**
+	 * reads a tree in the format read by MyGhosts.DecisionTree.initTree
+	 */
+	public static CompiledTree read(BufferedReader in) throws IOException{
+		StringTokenizer st = new StringTokenizer(in.readLine());
+		int n = Integer.parseInt(st.nextToken());
+		int m = Integer.parseInt(st.nextToken());
+		int root = Integer.parseInt(st.nextToken());
+
+		int[] attributes = new int[n];
+		int[][] children = new int[n][];
+		int[] strategies = new int[n];
+		Arrays.fill(strategies, -1);
+
+		while(n-->0){
+			st = new StringTokenizer(in.readLine());
+			int index = Integer.parseInt(st.nextToken());
+			attributes[index] = Integer.parseInt(st.nextToken());
+			children[index] = new int[Math.max(0, Integer.parseInt(st.nextToken()))];
+			for(int i=0; i<children[index].length; i++){
+				children[index][i] = Integer.parseInt(st.nextToken());
+			}
+		}
+
+		while(m-->0){
+			st = new StringTokenizer(in.readLine());
+			int index = Integer.parseInt(st.nextToken());
+			strategies[index] = Integer.parseInt(st.nextToken());
+		}
+		return new CompiledTree(root, attributes, children, strategies);
+	}
+
+	/**
+	 * @return : the attributes tested by the tree, in increasing order
+	 */
+	int[] getTested(){
+		return tested;
+	}
+
+	/**
+	 * @return : the number of values of each attribute tested (see getTested())
+	 */
+	int[] getDomains(){
+		return domain;
+	}
+
+	/**
+	 * @return : one more than the largest strategy of the leaves
+	 */
+	int getNumStrategies(){
+		int max = -1;
+		for(int i=0; i<strategy.length; i++){
+			max = Math.max(max, strategy[i]);
+		}
+		return max+1;
+	}
+
+	/**
+	 * @return : whether the tree is evaluated through the lookup table
+	 */
+	public boolean hasTable(){
+		return table != null;
+	}
+}
@@ -0,0 +1,544 @@
+package game.controllers.examples;
+
+import 	game.controllers.PacManController;
+import 	game.core.Game;
+import 	game.core._G_;
+import	java.util.*;
+import	java.util.concurrent.*;
+
+/**
+ * DecisionTreeLearner
+ *	Learns decision trees for MyGhosts (ID3: the attribute with the highest information gain is
+ *	tested at each node, and each attribute at most once on a path) from examples of ghost
+ *	decisions. An example is the attribute vector of a ghost at a junction (see MyGhosts.updateAttr)
+ *	and the index of the strategy it used, recorded while MyGhosts plays (see collect).
+ *
+ *	The examples are stored as columns of bytes, one per attribute learned from (ATTRIBUTES), and
+ *	split into shards of SHARD_SIZE examples. The tree is grown one level at a time: for every
+ *	shard and attribute, a task counts the examples of the open nodes by value and strategy,
+ *	the counts are added up and every open node is either split or made a leaf; then every
+ *	shard moves its examples down to the new nodes. Hence a level costs one parallel pass over
+ *	the examples, whatever the number of nodes.
+ *
+ *	The tree learned is returned as a CompiledTree, which may be written in the format read by
+ *	MyGhosts.DecisionTree.initTree. Ensembles of trees may be learned by bagging (the trees are
+ *	learned in parallel, each by one thread) or boosting (the trees are learned one after the
+ *	other, each with the parallel passes above); see TreeEnsemble.
+ */
+public final class DecisionTreeLearner{
+
+	public static final int[]	ATTRIBUTES	= {0, 1, 2, 5, 6};	//the attributes of MyGhosts learned from (3 is a timer)
+	public static final int		ATTR_LEN	= 7;				//length of the attribute vectors of MyGhosts
+	public static final int		NUM_STRATS	= 8;				//number of strategies of MyGhosts
+	public static final int		SHARD_SIZE	= 1<<16;			//examples per shard
+
+	private final int			numThreads;
+	private byte[][]			values		= new byte[ATTRIBUTES.length][1024];	//[attribute][example]
+	private byte[]				labels		= new byte[1024];						//strategy of each example
+	private int					size;
+
+	public DecisionTreeLearner(int numThreads){
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * adds an example: the attributes of a ghost and the strategy it used
+	 */
+	public void add(int[] attributes, int strategy){
+		if(size == labels.length){
+			for(int a=0; a<values.length; a++){
+				values[a] = Arrays.copyOf(values[a], size*2);
+			}
+			labels = Arrays.copyOf(labels, size*2);
+		}
+		for(int a=0; a<ATTRIBUTES.length; a++){
+			values[a][size] = (byte)attributes[ATTRIBUTES[a]];
+		}
+		labels[size++] = (byte)strategy;
+	}
+
+	/**
+	 * adds all examples of the learner supplied to this one
+	 */
+	public synchronized void addAll(DecisionTreeLearner other){
+		int[] attributes = new int[ATTR_LEN];
+
+		for(int i=0; i<other.size; i++){
+			for(int a=0; a<ATTRIBUTES.length; a++){
+				attributes[ATTRIBUTES[a]] = other.values[a][i];
+			}
+			add(attributes, other.labels[i]);
+		}
+	}
+
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Plays the number of games specified (spread over the threads, without visuals or delays) between
+	 * new instances of the Ms Pac-Man controller given (by class name) and MyGhosts with the tree given,
+	 * and keeps the decisions of the ghosts as examples. With probability exploration, a ghost uses a
+	 * random strategy instead of the one of the tree. Only the games in which Ms Pac-Man scores at most
+	 * maxScore are kept, so that the trees learned imitate the decisions of the games the ghosts did well
+	 * in (Integer.MAX_VALUE keeps all games).
+	 *
+	 * @return : the number of games kept
+	 */
+	public int collect(final String pacManName, final String treeFileName, int games, final double exploration, final int maxScore) throws InterruptedException{
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+
+		for(int t=0; t<numThreads; t++){
+			final int numGames = games/numThreads + (t < games%numThreads ? 1 : 0);
+
+			futures.add(executor.submit(new Callable<Integer>(){
+				public Integer call() throws ReflectiveOperationException{
+					DecisionTreeLearner examples = new DecisionTreeLearner(1);
+					MyGhosts ghosts = new MyGhosts(false, new boolean[4], treeFileName);
+					ghosts.setLearner(examples, exploration);
+					int kept = 0;
+
+					for(int g=0; g<numGames; g++){
+						PacManController pacMan = (PacManController)Class.forName(pacManName).getDeclaredConstructor().newInstance();
+						ghosts.initAttr();
+
+						_G_ game = new _G_();
+						game.newGame();
+
+						while(!game.gameOver()){
+							Game snapshot = game.snapshot();
+							long due = System.currentTimeMillis() + Game.DELAY;
+							game.advanceGame(pacMan.getAction(snapshot, due), ghosts.getActions(snapshot, due));
+						}
+
+						if(game.getScore() <= maxScore){
+							addAll(examples);
+							kept++;
+						}
+						examples.size = 0;
+					}
+					return kept;
+				}
+			}));
+		}
+
+		try{
+			int kept = 0;
+			for(Future<Integer> future : futures){
+				kept += future.get();
+			}
+			return kept;
+		} catch(ExecutionException e){
+			throw new RuntimeException(e.getCause());
+		} finally{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Learns a tree from the examples. A node becomes a leaf (with the most frequent strategy of its
+	 * examples) if all its examples use the same strategy, if it has fewer than minExamples examples,
+	 * or if no attribute left has a positive information gain. Values not seen at a node lead to a leaf
+	 * with the most frequent strategy of the node.
+	 */
+	public CompiledTree learn(int minExamples) throws InterruptedException{
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try{
+			return learn(minExamples, null, executor);
+		} finally{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Learns an ensemble of trees by bagging: each tree is learned from a bootstrap sample of the
+	 * examples (as many examples drawn at random, with replacement), the trees in parallel, and all
+	 * trees have the same vote.
+	 */
+	public TreeEnsemble learnBagged(int numTrees, final int minExamples, final long seed) throws InterruptedException{
+		List<Callable<CompiledTree>> tasks = new ArrayList<Callable<CompiledTree>>();
+
+		for(int t=0; t<numTrees; t++){
+			final Random random = new Random(seed+t);
+
+			tasks.add(new Callable<CompiledTree>(){
+				public CompiledTree call() throws InterruptedException{
+					double[] weights = new double[size];	//number of times each example is drawn
+					for(int i=0; i<size; i++){
+						weights[random.nextInt(size)]++;
+					}
+					return learn(minExamples, weights, null);
+				}
+			});
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try{
+			List<CompiledTree> trees = invoke(executor, tasks);
+			double[] votes = new double[trees.size()];
+			Arrays.fill(votes, 1);
+
+			return new TreeEnsemble(trees.toArray(new CompiledTree[trees.size()]), votes);
+		} finally{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Learns an ensemble of trees by boosting (SAMME, the multi-class version of AdaBoost): the trees
+	 * are learned one after the other, each from the examples weighted by how often the trees before
+	 * it got them wrong, and vote according to their weighted error. Stops early if a tree makes no
+	 * error or is no better than chance.
+	 */
+	public TreeEnsemble learnBoosted(int numTrees, int minExamples) throws InterruptedException{
+		List<CompiledTree> trees = new ArrayList<CompiledTree>();
+		List<Double> votes = new ArrayList<Double>();
+		double[] weights = new double[size];
+		int[] attributes = new int[ATTR_LEN];
+		Arrays.fill(weights, 1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try{
+			for(int t=0; t<numTrees; t++){
+				CompiledTree tree = learn(minExamples, weights, executor);
+				double error = 0;
+				double total = 0;
+
+				for(int i=0; i<size; i++){
+					if(tree.evaluate(getAttributes(i, attributes)) != labels[i]){
+						error += weights[i];
+					}
+					total += weights[i];
+				}
+				error /= total;
+
+				if(error >= 1-1.0/NUM_STRATS){
+					break;
+				}
+
+				trees.add(tree);
+
+				if(error <= 1e-9){
+					votes.add(1.0);
+					break;
+				}
+
+				double vote = Math.log((1-error)/error) + Math.log(NUM_STRATS-1);
+				votes.add(vote);
+
+				//the weights of the examples the tree got wrong are increased; the weights are kept at a mean of 1
+				double sum = 0;
+				for(int i=0; i<size; i++){
+					if(tree.evaluate(getAttributes(i, attributes)) != labels[i]){
+						weights[i] *= Math.exp(vote);
+					}
+					sum += weights[i];
+				}
+				for(int i=0; i<size; i++){
+					weights[i] *= size/sum;
+				}
+			}
+		} finally{
+			executor.shutdown();
+		}
+
+		double[] voteArray = new double[votes.size()];
+		for(int t=0; t<voteArray.length; t++){
+			voteArray[t] = votes.get(t);
+		}
+		return new TreeEnsemble(trees.toArray(new CompiledTree[trees.size()]), voteArray);
+	}
+
+	/**
+	 * learns a tree from the examples, each counted with its weight (1 if weights is null); the tasks
+	 * are run by the executor supplied or, if it is null, by the calling thread
+	 */
+	private CompiledTree learn(int minExamples, double[] weights, ExecutorService executor) throws InterruptedException{
+		int[] domain = new int[ATTRIBUTES.length];
+		for(int a=0; a<ATTRIBUTES.length; a++){
+			for(int i=0; i<size; i++){
+				domain[a] = Math.max(domain[a], values[a][i]+1);
+			}
+		}
+
+		//the tree, grown one level at a time
+		List<Integer> attribute = new ArrayList<Integer>();
+		List<int[]> children = new ArrayList<int[]>();
+		List<Integer> strategy = new ArrayList<Integer>();
+		List<Integer> used = new ArrayList<Integer>();		//attributes tested on the path to each node (bit mask)
+
+		int[] node = new int[size];							//the node each example is at
+		int[] open = {0};									//the nodes of the current level
+		attribute.add(-1);
+		children.add(null);
+		strategy.add(-1);
+		used.add(0);
+
+		while(open.length > 0){
+			int[] slot = new int[attribute.size()];			//position of each open node in open, -1 for the others
+			Arrays.fill(slot, -1);
+			for(int i=0; i<open.length; i++){
+				slot[open[i]] = i;
+			}
+
+			double[][] counts = count(executor, node, slot, open.length, domain, weights);	//[attribute][(slot*domain+value)*NUM_STRATS+strategy]
+			int[][] next = new int[attribute.size()][];									//children of the nodes split at this level
+			List<Integer> nextOpen = new ArrayList<Integer>();
+
+			for(int i=0; i<open.length; i++){
+				int n = open[i];
+				double[] labelCounts = new double[NUM_STRATS];
+				for(int v=0; v<domain[0]; v++){
+					for(int s=0; s<NUM_STRATS; s++){
+						labelCounts[s] += counts[0][(i*domain[0]+v)*NUM_STRATS+s];
+					}
+				}
+
+				int majority = argMax(labelCounts);
+				double total = sum(labelCounts, 0);
+				int best = -1;
+				double bestGain = 1e-9;
+
+				if(total >= minExamples && labelCounts[majority] < total){
+					double entropy = entropy(labelCounts, 0, total);
+
+					for(int a=0; a<ATTRIBUTES.length; a++){
+						if((used.get(n) & (1<<a)) != 0){
+							continue;
+						}
+						double remainder = 0;
+						for(int v=0; v<domain[a]; v++){
+							int offset = (i*domain[a]+v)*NUM_STRATS;
+							double count = sum(counts[a], offset);
+							remainder += count/total * entropy(counts[a], offset, count);
+						}
+						if(entropy-remainder > bestGain){
+							bestGain = entropy-remainder;
+							best = a;
+						}
+					}
+				}
+
+				if(best == -1){
+					strategy.set(n, majority);
+					continue;
+				}
+
+				attribute.set(n, ATTRIBUTES[best]);
+				next[n] = new int[domain[best]];
+				children.set(n, next[n]);
+
+				for(int v=0; v<domain[best]; v++){
+					int child = attribute.size();
+					attribute.add(-1);
+					children.add(null);
+					used.add(used.get(n) | (1<<best));
+					next[n][v] = child;
+
+					if(sum(counts[best], (i*domain[best]+v)*NUM_STRATS) == 0){
+						strategy.add(majority);
+					} else {
+						strategy.add(-1);
+						nextOpen.add(child);
+					}
+				}
+			}
+
+			open = new int[nextOpen.size()];
+			for(int i=0; i<open.length; i++){
+				open[i] = nextOpen.get(i);
+			}
+
+			if(open.length > 0){
+				descend(executor, node, next, attribute);
+			}
+		}
+
+		int[] attributes = new int[attribute.size()];
+		int[][] childArrays = new int[attribute.size()][];
+		int[] strategies = new int[attribute.size()];
+		for(int n=0; n<attributes.length; n++){
+			attributes[n] = attribute.get(n);
+			childArrays[n] = children.get(n);
+			strategies[n] = strategy.get(n);
+		}
+		return new CompiledTree(0, attributes, childArrays, strategies);
+	}
+
+	/**
+	 * counts (or adds up the weights of) the examples of the open nodes by attribute, value and strategy:
+	 * one task per shard and attribute, whose counts are then added up
+	 */
+	private double[][] count(ExecutorService executor, final int[] node, final int[] slot, final int numOpen, final int[] domain, final double[] weights) throws InterruptedException{
+		List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>();
+
+		for(int from=0; from<size; from+=SHARD_SIZE){
+			final int start = from;
+			final int end = Math.min(size, from+SHARD_SIZE);
+
+			for(int a=0; a<ATTRIBUTES.length; a++){
+				final byte[] column = values[a];
+				final int numValues = domain[a];
+
+				tasks.add(new Callable<double[]>(){
+					public double[] call(){
+						double[] counts = new double[numOpen*numValues*NUM_STRATS];
+						for(int i=start; i<end; i++){
+							int s = slot[node[i]];
+							if(s >= 0){
+								counts[(s*numValues+column[i])*NUM_STRATS+labels[i]] += weights == null ? 1 : weights[i];
+							}
+						}
+						return counts;
+					}
+				});
+			}
+		}
+
+		double[][] counts = new double[ATTRIBUTES.length][];
+		for(int a=0; a<ATTRIBUTES.length; a++){
+			counts[a] = new double[numOpen*domain[a]*NUM_STRATS];
+		}
+
+		List<double[]> shardCounts = invoke(executor, tasks);
+		for(int t=0; t<shardCounts.size(); t++){
+			double[] total = counts[t%ATTRIBUTES.length];
+			for(int i=0; i<total.length; i++){
+				total[i] += shardCounts.get(t)[i];
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * moves the examples of the nodes split down to the child of their value, one task per shard
+	 */
+	private void descend(ExecutorService executor, final int[] node, final int[][] next, List<Integer> attribute) throws InterruptedException{
+		final int[] column = new int[next.length];		//the column of the attribute tested by each node split
+		for(int n=0; n<next.length; n++){
+			if(next[n] != null){
+				for(int a=0; a<ATTRIBUTES.length; a++){
+					if(ATTRIBUTES[a] == attribute.get(n)){
+						column[n] = a;
+					}
+				}
+			}
+		}
+
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+
+		for(int from=0; from<size; from+=SHARD_SIZE){
+			final int start = from;
+			final int end = Math.min(size, from+SHARD_SIZE);
+
+			tasks.add(new Callable<Object>(){
+				public Object call(){
+					for(int i=start; i<end; i++){
+						int n = node[i];
+						if(n < next.length && next[n] != null){
+							node[i] = next[n][values[column[n]][i]];
+						}
+					}
+					return null;
+				}
+			});
+		}
+
+		invoke(executor, tasks);
+	}
+
+	/**
+	 * runs the tasks with the executor supplied or, if it is null, one after the other in the calling thread
+	 */
+	private static <T> List<T> invoke(ExecutorService executor, List<? extends Callable<T>> tasks) throws InterruptedException{
+		List<T> results = new ArrayList<T>(tasks.size());
+
+		try{
+			if(executor == null){
+				for(Callable<T> task : tasks){
+					results.add(task.call());
+				}
+			} else {
+				for(Future<T> future : executor.invokeAll(tasks)){
+					results.add(future.get());
+				}
+			}
+		} catch(InterruptedException e){
+			throw e;
+		} catch(ExecutionException e){
+			throw new RuntimeException(e.getCause());
+		} catch(Exception e){
+			throw new RuntimeException(e);
+		}
+		return results;
+	}
+
+	//the attributes of the i-th example (in an attribute vector of MyGhosts)
+	private int[] getAttributes(int i, int[] attributes){
+		for(int a=0; a<ATTRIBUTES.length; a++){
+			attributes[ATTRIBUTES[a]] = values[a][i];
+		}
+		return attributes;
+	}
+
+	/**
+	 * @return : the fraction of the examples whose strategy is the one chosen by the tree
+	 */
+	public double accuracy(CompiledTree tree){
+		int[] attributes = new int[ATTR_LEN];
+		int correct = 0;
+
+		for(int i=0; i<size; i++){
+			if(tree.evaluate(getAttributes(i, attributes)) == labels[i]){
+				correct++;
+			}
+		}
+		return size == 0 ? 0 : correct/(double)size;
+	}
+
+	/**
+	 * @return : the fraction of the examples whose strategy is the one chosen by the ensemble
+	 */
+	public double accuracy(TreeEnsemble ensemble){
+		int[] attributes = new int[ATTR_LEN];
+		int correct = 0;
+
+		for(int i=0; i<size; i++){
+			if(ensemble.evaluate(getAttributes(i, attributes)) == labels[i]){
+				correct++;
+			}
+		}
+		return size == 0 ? 0 : correct/(double)size;
+	}
+
+	//entropy (in bits) of the strategies counted in counts[offset..offset+NUM_STRATS-1]
+	private static double entropy(double[] counts, int offset, double total){
+		double entropy = 0;
+		for(int s=0; s<NUM_STRATS; s++){
+			if(counts[offset+s] > 0){
+				double p = counts[offset+s]/total;
+				entropy -= p*Math.log(p)/Math.log(2);
+			}
+		}
+		return entropy;
+	}
+
+	private static double sum(double[] counts, int offset){
+		double sum = 0;
+		for(int s=0; s<NUM_STRATS; s++){
+			sum += counts[offset+s];
+		}
+		return sum;
+	}
+
+	private static int argMax(double[] counts){
+		int best = 0;
+		for(int s=1; s<counts.length; s++){
+			if(counts[s] > counts[best]){
+				best = s;
+			}
+		}
+		return best;
+	}
+}
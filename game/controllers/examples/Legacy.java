@@ -1,10 +1,11 @@
 package game.controllers.examples;
 
 import game.controllers.GhostController;
+import game.controllers.DecisionPointController;
 import game.core.Game.DM;
 import game.core.Game;
 
-public class Legacy implements GhostController
+public class Legacy implements GhostController,DecisionPointController
 {
 	public int[] getActions(Game game,long timeDue)
 	{
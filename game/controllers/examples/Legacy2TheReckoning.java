@@ -1,9 +1,10 @@
 package game.controllers.examples;
 
 import game.controllers.GhostController;
+import game.controllers.DecisionPointController;
 import game.core.Game;
 
-public class Legacy2TheReckoning implements GhostController
+public class Legacy2TheReckoning implements GhostController,DecisionPointController
 {
 	public static final int CROWDED_DISTANCE=30;
 	public static final int PACMAN_DISTANCE=10;
@@ -0,0 +1,155 @@
+package game.controllers.examples;
+
+import 	game.core.G;
+import	java.util.*;
+
+/**
+ * LookaheadTable
+ *	The nodes ahead of Ms Pac-Man, k steps (nodes) away, for every node and direction of a maze. They
+ *	only depend on the maze, the node, the direction and k, so they are worked out once per maze and k
+ *	from the graph of the maze (see get; MyGhosts builds its tables when it is created, before any
+ *	timed game starts) and the strategies look them up instead of walking the maze in every time step. The answers are those of the searches the chase strategies of MyGhosts used to run:
+ *
+ *	getAhead	: the nodes k steps straight ahead or, if Ms Pac-Man would run into a wall before
+ *				  that, the nodes the remaining steps away around the corner (PinkyChase), in the
+ *				  order the search found them
+ *	getStraight	: the last node straight ahead within k steps, before any wall (InkyChase)
+ *
+ *	The directions are those of Game (UP, RIGHT, DOWN, LEFT) plus 4 for none. A table is read-only once
+ *	built and may be shared by any number of threads.
+ */
+public final class LookaheadTable{
+
+	private static final int	NUM_DIRS	= 5;						//the four directions and none
+	private static final Map<String, LookaheadTable> tables = new HashMap<String, LookaheadTable>();
+
+	private final int[]			first;									//position in ahead of the nodes of each node/direction
+	private final int[]			ahead;									//the nodes ahead of all nodes/directions, one after the other
+	private final int[]			straight;								//the last node straight ahead of each node/direction
+
+	/**
+	 * @return : the table of the maze given for k steps (built the first time it is asked for)
+	 */
+	public static LookaheadTable get(int maze, int k){
+		synchronized(tables){
+			String key = maze + "/" + k;
+			LookaheadTable table = tables.get(key);
+			if(table == null){
+				table = new LookaheadTable(G.getMazeNeighbours(maze), k);
+				tables.put(key, table);
+			}
+			return table;
+		}
+	}
+
+	//builds the table of the maze whose neighbours are given ([node][direction])
+	private LookaheadTable(int[][] graph, int k){
+		int numNodes = graph.length;
+		first = new int[numNodes*NUM_DIRS+1];
+		straight = new int[numNodes*NUM_DIRS];
+
+		List<Integer> nodes = new ArrayList<Integer>();
+		for(int node=0; node<numNodes; node++){
+			for(int dir=0; dir<NUM_DIRS; dir++){
+				first[node*NUM_DIRS+dir] = nodes.size();
+				nodes.addAll(findAhead(graph, node, dir, k));
+				straight[node*NUM_DIRS+dir] = findStraight(graph, node, dir, k);
+			}
+		}
+		first[numNodes*NUM_DIRS] = nodes.size();
+
+		ahead = new int[nodes.size()];
+		for(int i=0; i<ahead.length; i++){
+			ahead[i] = nodes.get(i);
+		}
+	}
+
+	/**
+	 * @return : the number of nodes ahead of the node given in the direction given
+	 */
+	public int getNumAhead(int node, int dir){
+		int index = index(node, dir);
+		return first[index+1] - first[index];
+	}
+
+	/**
+	 * @return : the i-th node ahead of the node given in the direction given
+	 */
+	public int getAhead(int node, int dir, int i){
+		return ahead[first[index(node, dir)] + i];
+	}
+
+	/**
+	 * @return : the last node straight ahead of the node given in the direction given
+	 */
+	public int getStraight(int node, int dir){
+		return straight[index(node, dir)];
+	}
+
+	//position of the node/direction in the tables (any direction other than the four is none)
+	private static int index(int node, int dir){
+		return node*NUM_DIRS + (dir >= 0 && dir < 4 ? dir : 4);
+	}
+
+	//the neighbour of the node in the direction given; the node itself for none (as Game.getNeighbour)
+	private static int getNeighbour(int[][] graph, int node, int dir){
+		return dir < 0 || dir > 3 ? node : graph[node][dir];
+	}
+
+	//finds the nodes k steps ahead: straight ahead as far as possible, then
+	//dfs to find the rest of the blocks
+	private static Set<Integer> findAhead(int[][] graph, int loc, int dir, int k){
+		HashSet<Integer> res = new HashSet<Integer>();
+		HashSet<Integer> approx = new HashSet<Integer>();
+
+		int counter = k;
+		int nextLoc;
+		int prevLoc = loc;
+
+		while((nextLoc = getNeighbour(graph, prevLoc, dir)) != -1 && counter > 0){
+			approx.add(nextLoc);
+			prevLoc = nextLoc;
+			counter --;
+		}
+
+		if(counter > 0){
+			//we do this to avoid an overflow and still find k nodes from pacman
+			dfs(graph, prevLoc, counter, res, approx);
+		}
+		else {
+			res.add(nextLoc);
+		}
+		return res;
+	}
+
+	//helper dfs just so we can find which squares are probably in front of pacman
+	private static void dfs(int[][] graph, int curr, int counter, Set<Integer> res, Set<Integer> approx){
+		if(counter <= 0) {
+			res.add(curr);
+			return;
+		}
+		for(int i = 0; i<4; i++){
+			int next = getNeighbour(graph, curr, i);
+			if(next!=-1 && !approx.contains(next)){
+				approx.add(curr);
+				dfs(graph, next, counter-1, res, approx);
+			}
+		}
+	}
+
+	//finds the point that is k steps in front of pacman
+	//if there isn't a point that is k steps in front
+	//then the algorithm will select nodes closer to pacman
+	private static int findStraight(int[][] graph, int loc, int dir, int k){
+		int counter = k;
+
+		int next = loc;
+		int prev = loc;
+
+		while(counter-->0 && getNeighbour(graph, prev, dir) != -1){
+			prev = next;
+			next = getNeighbour(graph, prev, dir);
+		}
+		return prev;
+	}
+}
@@ -1,6 +1,7 @@
 package game.controllers.examples;
 
 import 	game.controllers.GhostController;
+import 	game.controllers.DecisionPointController;
 import 	game.core.Game.DM;
 import 	game.core.Game;
 import 	game.core.GameView;
@@ -25,7 +26,7 @@ import 	java.io.*;
  *
  *	@Author Steven Zhang
  */
-public class MyGhosts implements GhostController{
+public class MyGhosts implements GhostController,DecisionPointController{
 
 	//Game engine constants
 	private static final int 	TILE_WIDTH 	= 3;				//the approx width of a tile
@@ -34,6 +35,7 @@ public class MyGhosts implements GhostController{
 	private static final int 	MAXY 		= 116;				//maximum y coordinate value
 	//path to where we store our decision trees
 	private static final String PATH_DT		="game/controllers/examples/DecisionTrees/";
+	private static final String ENSEMBLE_EXTENSION=".ens";		//extension of the files that hold ensembles of trees
 	//Colors that corrospond to the ghost index
 	public static final Color[] PALLET 		= { Color.RED, Color.PINK, Color.ORANGE, Color.BLUE};
 
@@ -44,13 +46,26 @@ public class MyGhosts implements GhostController{
 	private static final int 	CRIT_DIST 	= 8*TILE_WIDTH;		//the distance that clyde starts to retarget
 	private static final int 	CRIT_NUM 	= 30;				//this is when Binky will always chase
 
+	//Benchmark variants (see benchmarkTree)
+	private static final int 	NODES 		= 0;				//traversing the Node objects
+	private static final int 	FLAT 		= 1;				//walking the flat arrays
+	private static final int 	COMPILED 	= 2;				//evaluating the compiled tree
+	private static final int 	VOTES 		= 3;				//adding up the votes of the ensemble's trees
+	private static final int 	ENSEMBLE 	= 4;				//evaluating the compiled ensemble
+
 	//Debuging Options
-	private static boolean 		Debugging 	= false;			//is debugging turned on
-	private static boolean[] 	DebugGhost 	= new boolean[4]; 	//this is an array so we can specify which ghost we want to debug  	
+	private boolean 			Debugging 	= false;			//is debugging turned on
+	private boolean[] 			DebugGhost 	= new boolean[4]; 	//this is an array so we can specify which ghost we want to debug  	
 
 	//Decision Tree structures
 	private DecisionTree 		tree;							//our decision tree	
-	private static int[][] 		attr;							//our attribute array
+	private int[][] 			attr;							//our attribute array
+	private int 				lastTime 	= -1;				//game time of the last update (calls may be skipped)
+
+	//Learning (see DecisionTreeLearner)
+	private DecisionTreeLearner learner;						//if set, the decisions are recorded as examples
+	private double 				exploration;					//probability of using a random strategy instead
+	private long 				benchmarkChecksum;				//sum of the decisions timed, keeps the loops from being optimised away
 
 	/**
 	 * Main constructor for MyGhost initializes everything
@@ -99,12 +114,33 @@ public class MyGhosts implements GhostController{
 		
 		//checks the decision tree for action
 		for(int i=0; i<4; i++){
-			directions[i] = tree.whatDo(attr[i]).run(game, i);
+			//only decisions are explored and recorded: the direction of a ghost in the lair or in a
+			//corridor is ignored by the engine, whatever the strategy
+			if(learner == null || !game.ghostRequiresAction(i)){
+				directions[i] = tree.whatDo(attr[i]).run(game, i);
+				continue;
+			}
+			int strategy = tree.choose(attr[i]);
+			if(exploration > 0 && Game.rnd.nextDouble() < exploration){
+				strategy = Game.rnd.nextInt(tree.strats.length);
+			}
+			learner.add(attr[i], strategy);
+			directions[i] = tree.strats[strategy].run(game, i);
 		}
 		
 		return directions;
 	}
 
+	/**
+	 * records the attributes of every ghost that requires an action and the strategy it uses as
+	 * examples for the learner given (null to stop); with probability exploration, a random strategy
+	 * is used instead of the one chosen by the tree
+	 */
+	public void setLearner(DecisionTreeLearner learner, double exploration){
+		this.learner = learner;
+		this.exploration = exploration;
+	}
+
 	/**
 	 * initializes the attribute arrays
 	 * here is the list of attributes by index
@@ -123,7 +159,7 @@ public class MyGhosts implements GhostController{
 			attr[i][2] = 1;	// all ghosts start in the chase phase...
 			//take a random start timer so that the ghosts won't all
 			//transition at the same time.
-			attr[i][3] = (int)Math.ceil(Math.random() * CHASE_TIME); 
+			attr[i][3] = (int)Math.ceil(Game.rnd.nextDouble() * CHASE_TIME); 
 		}
 	}
 
@@ -132,10 +168,18 @@ public class MyGhosts implements GhostController{
 	 * based on the mapping of varibles
 	 */
 	public void updateAttr(Game game){
+		//the engine does not call us when no ghost has a decision to make (see DecisionPointController)
+		//so the timers are moved on by the game time that has elapsed since the last update
+		int elapsed = 1;
+		if(lastTime >= 0 && game.getTotalTime() > lastTime){
+			elapsed = game.getTotalTime() - lastTime;
+		}
+		lastTime = game.getTotalTime();
+
 		for(int i=0; i<4; i++){
 			attr[i][1] = game.isEdible(i) ? 1 : 0; 	//checks to see if the ghost is edible
-			attr[i][3] --; //down tick the timer...
-			if(attr[i][3] == 0){
+			attr[i][3] -= elapsed; //down tick the timer...
+			if(attr[i][3] <= 0){
 				if(attr[i][2] == 1){ // if it is at chase then go to scatter
 					attr[i][2] = 0;
 					attr[i][3] = SCAT_TIME;
@@ -157,6 +201,98 @@ public class MyGhosts implements GhostController{
 		}
 	}
 
+	/**
+	 * checks that the compiled tree chooses the same strategy as the Node objects for
+	 * every combination of the attributes tested
+	 *
+	 * @return : the number of combinations for which they differ
+	 */
+	public int checkCompiledTree(){
+		if(tree.ensemble != null){
+			return tree.ensemble.check();
+		}
+
+		int[] attributes = new int[ATTR_LEN];
+		int mismatches = 0;
+
+		for(long i=0; i<tree.compiled.getNumCombinations(); i++){
+			tree.compiled.unpack(i, attributes);
+			Strategy expected = tree.walk(attributes);
+			if(tree.strats[tree.compiled.walk(attributes)] != expected || tree.whatDo(attributes) != expected){
+				mismatches++;
+			}
+		}
+		return mismatches;
+	}
+
+	/**
+	 * times the decisions of the tree over random combinations of the attributes tested
+	 *
+	 * @return : the nanoseconds per decision when traversing the Node objects, walking the
+	 *			 flat arrays and evaluating the compiled tree (through its table if it has one);
+	 *			 for an ensemble, adding up the votes of the trees and evaluating the ensemble
+	 */
+	public double[] benchmarkTree(int decisions){
+		int[][] samples = new int[1024][ATTR_LEN];
+		for(int i=0; i<samples.length; i++){
+			if(tree.ensemble != null){
+				tree.ensemble.unpack((long)(Game.rnd.nextDouble() * tree.ensemble.getNumCombinations()), samples[i]);
+			} else {
+				tree.compiled.unpack((long)(Game.rnd.nextDouble() * tree.compiled.getNumCombinations()), samples[i]);
+			}
+		}
+
+		int[] variants = tree.ensemble != null ? new int[]{ VOTES, ENSEMBLE } : new int[]{ NODES, FLAT, COMPILED };
+		double[] nanos = new double[variants.length];
+
+		for(int warmup=0; warmup<2; warmup++){
+			for(int v=0; v<variants.length; v++){
+				nanos[v] = timeDecisions(variants[v], samples, decisions);
+			}
+		}
+		return nanos;
+	}
+
+	/**
+	 * times one way of taking the decisions over the samples (cycling through the 1024 of them)
+	 * and adds the decisions taken to benchmarkChecksum
+	 *
+	 * @return : the nanoseconds per decision
+	 */
+	private double timeDecisions(int variant, int[][] samples, int decisions){
+		long checksum = 0;
+		long start = System.nanoTime();
+		switch(variant){
+			case NODES:
+				for(int i=0; i<decisions; i++){
+					checksum += tree.walk(samples[i & 1023]).hashCode();
+				}
+				break;
+			case FLAT:
+				for(int i=0; i<decisions; i++){
+					checksum += tree.compiled.walk(samples[i & 1023]);
+				}
+				break;
+			case COMPILED:
+				for(int i=0; i<decisions; i++){
+					checksum += tree.compiled.evaluate(samples[i & 1023]);
+				}
+				break;
+			case VOTES:
+				for(int i=0; i<decisions; i++){
+					checksum += tree.ensemble.vote(samples[i & 1023]);
+				}
+				break;
+			default:
+				for(int i=0; i<decisions; i++){
+					checksum += tree.ensemble.evaluate(samples[i & 1023]);
+				}
+		}
+		double nanos = (System.nanoTime() - start) / (double)decisions;
+		benchmarkChecksum += checksum;
+		return nanos;
+	}
+
 	/**
 	 * hightlights the 8 closest squares in front of pacman in each direction
 	 * this is used for debugging Clyde who should run if he is within that distance
@@ -197,7 +333,7 @@ public class MyGhosts implements GhostController{
 		public int run(Game game, int ghost){
 			if(game.ghostRequiresAction(ghost)){
 				int[] possible = game.getPossibleGhostDirs(ghost);
-				int index = (int)(Math.random()*possible.length); //randomly chooses a place to go...
+				int index = Game.rnd.nextInt(possible.length); //randomly chooses a place to go...
 				return game.getNeighbour(game.getCurGhostLoc(ghost), possible[index]);
 			} return -1;
 		}
@@ -258,18 +394,34 @@ public class MyGhosts implements GhostController{
 	 */
 	private class PinkyChase implements Strategy {
 
+		private final LookaheadTable[] tables = new LookaheadTable[Game.NUM_MAZES];	//4 spaces ahead, per maze
+
+		//the tables are built here rather than in a (timed) call to run
+		public PinkyChase(){
+			for(int maze=0; maze<tables.length; maze++){
+				tables[maze] = LookaheadTable.get(maze, 4*TILE_WIDTH);
+			}
+		}
+
 		public int run(Game game, int ghost){
 			int next = 0;
 			int res = -1;
 
-			Set<Integer> dest = findDest(game, ghost);
-			int[] arr = new int[dest.size()];
-			int counter = 0;
-			for(int i : dest){
-				arr[counter++] = i;
+			//the spaces 4 tiles ahead of pacman (see LookaheadTable)
+			int pacLoc = game.getCurPacManLoc();
+			int pacDir = game.getCurPacManDir();
+			LookaheadTable table = tables[game.getCurMaze()];
+			int numDest = table.getNumAhead(pacLoc, pacDir);
+
+			if(Debugging && DebugGhost[ghost]){
+				for(int i=0; i<numDest; i++){
+					if(table.getAhead(pacLoc, pacDir, i) != -1){
+						GameView.addPoints(game, PALLET[ghost], table.getAhead(pacLoc, pacDir, i));
+					}
+				}
 			}
 
-			res = arr[(int)(Math.random()*dest.size())];
+			res = table.getAhead(pacLoc, pacDir, Game.rnd.nextInt(numDest));
 			if(game.ghostRequiresAction(ghost)){	
 				next = game.getNextGhostDir(ghost, res, true, Game.DM.PATH);
 			}
@@ -280,54 +432,6 @@ public class MyGhosts implements GhostController{
 			return next;
 
 		}
-
-		//private helper function to find 4 spaces ahead of pacman
-		private Set<Integer> findDest(Game game, int ghost){
-			int pacLoc = game.getCurPacManLoc();
-			int pacDir = game.getCurPacManDir();
-			HashSet<Integer> res = new HashSet<Integer>();
-			HashSet<Integer> approx = new HashSet<Integer>();
-
-			int counter = 4*TILE_WIDTH;
-			int nextLoc;
-			int prevLoc = pacLoc;
-	
-			while((nextLoc = game.getNeighbour(prevLoc, pacDir)) != -1 && counter > 0){
-				approx.add(nextLoc);
-				prevLoc = nextLoc;
-				counter --;
-			}
-			
-			if(counter > 0){
-				//begin dfs to find the rest of the blocks
-				//we do this to avoid an overflow and still find 4 tiles from pacman
-				dfs(game, prevLoc, counter, res, approx);
-			}
-			else {
-				res.add(nextLoc);
-			}
-			
-			if(Debugging && DebugGhost[ghost]){
-				GameView.addPoints(game, PALLET[ghost], res);
-			}
-
-			return res;
-		}
-
-		//helper dfs just so we can find which squares are probably in front of pacman
-		private void dfs(Game game, int curr, int counter,  Set<Integer> res, Set<Integer> approx){
-			if(counter <= 0) {
-				res.add(curr);
-				return;
-			}
-			for(int i = 0; i<4; i++){
-				int next = game.getNeighbour(curr, i);
-				if(next!=-1 && !approx.contains(next)){
-					approx.add(curr);
-					dfs(game, next, counter-1, res, approx);
-				}
-			}
-		}
 	}
 	
 	//AI to scatter to the top left
@@ -367,6 +471,16 @@ public class MyGhosts implements GhostController{
 		private int[] d1 = {1, -1, 0, 0};
 		private int[] d2 = {0, 0, -1, 1};
 
+		private final LookaheadTable[] tables = new LookaheadTable[Game.NUM_MAZES];	//2 tiles ahead, per maze
+		private final int[][] nearest = new int[Game.NUM_MAZES][];					//results of bfs, per maze (-2 if unknown)
+
+		//the tables are built here rather than in a (timed) call to run
+		public InkyChase(){
+			for(int maze=0; maze<tables.length; maze++){
+				tables[maze] = LookaheadTable.get(maze, 2*TILE_WIDTH);
+			}
+		}
+
 		public int run(Game game, int ghost){
 			int point1 = findInterestPoint1(game, ghost);		//2 tiles in front of pacman
 			int point2 = game.getCurGhostLoc(0);				//binky's location
@@ -408,7 +522,7 @@ public class MyGhosts implements GhostController{
 			//start bfs to find the closest legit square for 
 			//the ghost to target
 			if(ret == -1){
-				ret = bfs(game, finalx, finaly);
+				ret = findNearest(game, finalx, finaly);
 			}		
 
 			if(Debugging && DebugGhost[ghost]){
@@ -423,20 +537,29 @@ public class MyGhosts implements GhostController{
 
 		//finds the point that is 2 tiles in front of pacman
 		//if there isn't a point that is 2 tiles in front
-		//then the algorithm will select tiles closer to pacman
+		//then the table holds a tile closer to pacman
 		private int findInterestPoint1(Game game, int ghost){
-			int pacLoc = game.getCurPacManLoc();
-			int pacDir = game.getCurPacManDir();
-			int counter  = 2*TILE_WIDTH;
-			
-			int next = pacLoc;
-			int prev = pacLoc;
+			return tables[game.getCurMaze()].getStraight(game.getCurPacManLoc(), game.getCurPacManDir());
+		}
 
-			while(counter-->0 && game.getNeighbour(prev, pacDir) != -1){
-				prev = next;
-				next = game.getNeighbour(prev, pacDir);
+		//the closest legitimate space to the point given (see bfs), which
+		//only depends on the maze: it is searched once and remembered
+		private int findNearest(Game game, int x, int y){
+			if(x<0 || x>MAXX || y<0 || y>MAXY){
+				return bfs(game, x, y);
 			}
-			return prev;
+
+			int maze = game.getCurMaze();
+			if(nearest[maze] == null){
+				nearest[maze] = new int[(MAXX+1)*(MAXY+1)];
+				Arrays.fill(nearest[maze], -2);
+			}
+
+			int index = y*(MAXX+1) + x;
+			if(nearest[maze][index] == -2){
+				nearest[maze][index] = bfs(game, x, y);
+			}
+			return nearest[maze][index];
 		}
 
 		//helper bfs method that will find the closest legitimate 
@@ -559,10 +682,18 @@ public class MyGhosts implements GhostController{
 		protected  int				root; 			//int of the root of the Tree
 		protected  Strategy[] 		strats; 		//an array that holds all of the stratgies
 		protected  Node[]			tree;			//an array representation of the tree;
+		protected  CompiledTree		compiled;		//the tree as flat arrays, used to decide (see compile())
+		protected  TreeEnsemble		ensemble;		//used to decide instead of the tree if one is loaded
 
+		//files ending in ENSEMBLE_EXTENSION hold an ensemble of trees (see TreeEnsemble)
 		public DecisionTree(String dt){
 			initStrats();
-			initTree(dt);
+			if(dt.endsWith(ENSEMBLE_EXTENSION)){
+				initEnsemble(dt);
+			} else {
+				initTree(dt);
+				compile();
+			}
 		}
 
 		public DecisionTree(){
@@ -635,11 +766,66 @@ public class MyGhosts implements GhostController{
 			}
 		}
 
+		/**
+		 * compiles the tree into flat arrays (and a lookup table over the attributes
+		 * tested); the leaves refer to the strategies by their index in strats
+		 */
+		public void compile(){
+			int[] attributes = new int[tree.length];
+			int[][] children = new int[tree.length][];
+			int[] strategies = new int[tree.length];
+
+			for(int i=0; i<tree.length; i++){
+				strategies[i] = -1;
+				if(tree[i].isLeaf()){
+					for(int j=0; j<strats.length; j++){
+						if(strats[j] == tree[i].strat){
+							strategies[i] = j;
+						}
+					}
+				} else {
+					attributes[i] = tree[i].attribute;
+					children[i] = tree[i].children;
+				}
+			}
+			compiled = new CompiledTree(root, attributes, children, strategies);
+		}
+
+		/**
+		 * loads an ensemble of trees; if it cannot be read, the default tree is used
+		 */
+		public void initEnsemble(String filePath){
+			try {
+				ensemble = TreeEnsemble.load(PATH_DT + filePath);
+				System.out.println("[ensemble of " + ensemble.size() + " trees]");
+			} catch (IOException e){
+				e.printStackTrace();
+				System.out.println("Input reading error switching to initializing default tree...");
+				getDefaultTree();
+				compile();
+			}
+		}
+
+		/**
+		* method to find out what a ghost should do
+		* and returns the index of the strategy for it to take
+		*/
+		public int choose(int[] attributes){
+			return ensemble != null ? ensemble.evaluate(attributes) : compiled.evaluate(attributes);
+		}
+
 		/**
 		* method to find out what a ghost should do
 		* and returns a strategy for it to take
 		*/
 		public Strategy whatDo(int[] attributes){
+			return strats[choose(attributes)];
+		}
+
+		/**
+		* same as above, traversing the Node objects of the tree
+		*/
+		public Strategy walk(int[] attributes){
 			return whatDo(root, attributes);
 		}
 
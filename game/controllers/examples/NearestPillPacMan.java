@@ -1,7 +1,6 @@
 package game.controllers.examples;
 
 import game.controllers.PacManController;
-import game.core.G;
 import game.core.Game;
 
 public class NearestPillPacMan implements PacManController
@@ -10,22 +9,10 @@ public class NearestPillPacMan implements PacManController
 	{	
 		int current=game.getCurPacManLoc();
 		
-		//get all active pills
-		int[] activePills=game.getPillIndicesActive();
-		
-		//get all active power pills
-		int[] activePowerPills=game.getPowerPillIndicesActive();
-		
-		//create a target array that includes all ACTIVE pills and power pills
-		int[] targetsArray=new int[activePills.length+activePowerPills.length];
-		
-		for(int i=0;i<activePills.length;i++)
-			targetsArray[i]=activePills[i];
-		
-		for(int i=0;i<activePowerPills.length;i++)
-			targetsArray[activePills.length+i]=activePowerPills[i];		
+		//get the closest ACTIVE pill or power pill (served by the pre-computed pill orders of the maze)
+		int nearest=game.getNearestActivePillOrPowerPill(current);
 		
 		//return the next direction once the closest target has been identified
-		return game.getNextPacManDir(game.getTarget(current,targetsArray,true,G.DM.PATH),true,Game.DM.PATH);	
+		return game.getNextPacManDir(nearest,true,Game.DM.PATH);	
 	}
 }
\ No newline at end of file
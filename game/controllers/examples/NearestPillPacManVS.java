@@ -17,17 +17,7 @@ public final class NearestPillPacManVS implements PacManController
 	public int getAction(Game game,long timeDue)
 	{		
 		int current=game.getCurPacManLoc();
-		int[] activePills=game.getPillIndicesActive();
-		int[] activePowerPills=game.getPowerPillIndicesActive();
-		int[] targetsArray=new int[activePills.length+activePowerPills.length];
-		
-		for(int i=0;i<activePills.length;i++)
-			targetsArray[i]=activePills[i];
-		
-		for(int i=0;i<activePowerPills.length;i++)
-			targetsArray[activePills.length+i]=activePowerPills[i];		
-		
-		int nearest=game.getTarget(current,targetsArray,true,G.DM.PATH);		
+		int nearest=game.getNearestActivePillOrPowerPill(current);
 		
 		//add the path that Ms Pac-Man is following
 //		GameView.addPoints(game,Color.GREEN,game.getPath(current,nearest));
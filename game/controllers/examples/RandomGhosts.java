@@ -1,10 +1,11 @@
 package game.controllers.examples;
 
 import game.controllers.GhostController;
+import game.controllers.DecisionPointController;
 import game.core.G;
 import game.core.Game;
 
-public final class RandomGhosts implements GhostController
+public final class RandomGhosts implements GhostController,DecisionPointController
 {	
 	public int[] getActions(Game game,long timeDue)
 	{	
@@ -1,10 +1,11 @@
 package game.controllers.examples;
 
 import game.controllers.PacManController;
+import game.controllers.DecisionPointController;
 import game.core.G;
 import game.core.Game;
 
-public final class RandomNonRevPacMan implements PacManController
+public final class RandomNonRevPacMan implements PacManController,DecisionPointController
 {	
 	public int getAction(Game game,long timeDue)
 	{			
@@ -0,0 +1,192 @@
+package game.controllers.examples;
+
+import 	java.io.*;
+import	java.util.*;
+
+/**
+ * TreeEnsemble
+ *	Several decision trees over the same attributes and strategies (e.g., learned by bagging or
+ *	boosting, see DecisionTreeLearner), each with a vote: the strategy with the highest sum of votes
+ *	is chosen (the lowest one in case of a tie). As the trees test small discrete attributes, the
+ *	choice of the ensemble is worked out for every combination of the attributes tested by any of
+ *	the trees when the ensemble is created, and kept in a table indexed by the packed attribute
+ *	values (as in CompiledTree). Choosing a strategy is then a single lookup; ensembles that would
+ *	need more than CompiledTree.MAX_TABLE entries add up the votes of the trees instead, in an array
+ *	allocated once (such ensembles must not be shared by threads).
+ *
+ *	File format: first line [number of trees], then for every tree a line [vote] followed by the
+ *	tree in the format read by MyGhosts.DecisionTree.initTree.
+ */
+public final class TreeEnsemble{
+
+	private final CompiledTree[]	trees;
+	private final double[]			votes;						//vote of each tree
+	private final double[]			scores;						//votes of each strategy (see vote)
+	private final int[]				tested;						//the attributes tested by any of the trees
+	private final int[]				domain;						//number of values of each attribute tested
+	private final int[]				stride;						//multiplier of each attribute tested in the table index
+	private final int[]				table;						//strategy of every packed attribute vector (null if too large)
+
+	public TreeEnsemble(CompiledTree[] trees, double[] votes){
+		this.trees = trees.clone();
+		this.votes = votes.clone();
+
+		//the attributes tested by any tree, with the largest domain found
+		int numStrategies = 0;
+		int[] values = new int[0];
+		for(int t=0; t<trees.length; t++){
+			numStrategies = Math.max(numStrategies, trees[t].getNumStrategies());
+			int[] treeTested = trees[t].getTested();
+			int[] treeDomains = trees[t].getDomains();
+			for(int i=0; i<treeTested.length; i++){
+				if(treeTested[i] >= values.length){
+					values = Arrays.copyOf(values, treeTested[i]+1);
+				}
+				values[treeTested[i]] = Math.max(values[treeTested[i]], treeDomains[i]);
+			}
+		}
+		this.scores = new double[Math.max(1, numStrategies)];
+
+		int numTested = 0;
+		for(int a=0; a<values.length; a++){
+			if(values[a] > 0){
+				numTested++;
+			}
+		}
+
+		this.tested = new int[numTested];
+		this.domain = new int[numTested];
+		this.stride = new int[numTested];
+
+		long size = 1;
+		for(int a=0, j=0; a<values.length; a++){
+			if(values[a] > 0){
+				tested[j] = a;
+				domain[j] = values[a];
+				stride[j] = (int)Math.min(size, Integer.MAX_VALUE);
+				size *= values[a];
+				j++;
+			}
+		}
+
+		if(size <= CompiledTree.MAX_TABLE){
+			this.table = new int[(int)size];
+			int[] attributes = new int[values.length];
+			for(int index=0; index<size; index++){
+				unpack(index, attributes);
+				table[index] = vote(attributes);
+			}
+		} else {
+			this.table = null;
+		}
+	}
+
+	/**
+	 * @return : the strategy chosen by the ensemble for the attributes given
+	 */
+	public int evaluate(int[] attributes){
+		if(table == null){
+			return vote(attributes);
+		}
+
+		int index = 0;
+		for(int i=0; i<tested.length; i++){
+			index += attributes[tested[i]] * stride[i];
+		}
+		return table[index];
+	}
+
+	/**
+	 * @return : the strategy chosen by the ensemble for the attributes given, found by adding up the
+	 *			 votes of the trees
+	 */
+	public int vote(int[] attributes){
+		Arrays.fill(scores, 0);
+		for(int t=0; t<trees.length; t++){
+			scores[trees[t].evaluate(attributes)] += votes[t];
+		}
+
+		int best = 0;
+		for(int s=1; s<scores.length; s++){
+			if(scores[s] > scores[best]){
+				best = s;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * writes the values of the attributes tested that correspond to the packed index given into the array
+	 * supplied (the other attributes are left untouched)
+	 */
+	public void unpack(long index, int[] attributes){
+		for(int i=0; i<tested.length; i++){
+			attributes[tested[i]] = (int)(index % domain[i]);
+			index /= domain[i];
+		}
+	}
+
+	/**
+	 * number of packed attribute vectors: the product of the domains of the attributes tested
+	 */
+	public long getNumCombinations(){
+		long size = 1;
+		for(int i=0; i<domain.length; i++){
+			size *= domain[i];
+		}
+		return size;
+	}
+
+	/**
+	 * checks that the table chooses the same strategies as the votes of the trees for every
+	 * combination of the attributes tested
+	 *
+	 * @return : the number of combinations for which they differ
+	 */
+	public int check(){
+		int[] attributes = new int[tested.length == 0 ? 0 : tested[tested.length-1]+1];
+		int mismatches = 0;
+
+		for(long i=0; i<getNumCombinations(); i++){
+			unpack(i, attributes);
+			if(evaluate(attributes) != vote(attributes)){
+				mismatches++;
+			}
+		}
+		return mismatches;
+	}
+
+	public int size(){
+		return trees.length;
+	}
+
+	public void write(String fileName) throws IOException{
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(fileName)));
+		try{
+			out.println(trees.length);
+			for(int t=0; t<trees.length; t++){
+				out.println(votes[t]);
+				trees[t].write(out);
+			}
+		} finally{
+			out.close();
+		}
+	}
+
+	public static TreeEnsemble load(String fileName) throws IOException{
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(fileName)));
+		try{
+			int numTrees = Integer.parseInt(in.readLine().trim());
+			CompiledTree[] trees = new CompiledTree[numTrees];
+			double[] votes = new double[numTrees];
+
+			for(int t=0; t<numTrees; t++){
+				votes[t] = Double.parseDouble(in.readLine().trim());
+				trees[t] = CompiledTree.read(in);
+			}
+			return new TreeEnsemble(trees, votes);
+		} finally{
+			in.close();
+		}
+	}
+}
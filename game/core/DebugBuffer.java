@@ -0,0 +1,140 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/*
+ * Collects the debug drawing commands of a time step (see GameView.addPoints(-) and addLines(-)) in primitive arrays,
+ * from any number of threads without locks: a writer reserves a slot by incrementing the cursor, fills it and then
+ * sets its kind, which makes the slot visible to the reader. The buffer holds at most CAPACITY commands; further ones
+ * are dropped. GameView keeps two buffers and swaps them after every time step.
+ * 
+ * The cursor, the number of writers still filling a slot and a closed flag share a single int, so a writer cannot
+ * reserve a slot once the buffer has been drained: commands added late (by controllers that still hold the buffer
+ * swapped out) are dropped. A drained buffer is only emptied and opened again (see reopen()) once no writer is left,
+ * hence a slot is never filled by two writers.
+ */
+final class DebugBuffer
+{
+	static final int CAPACITY=1024;		//maximum number of commands per time step
+	static final int POINT=1;			//a square at x1,y1
+	static final int LINE=2;			//a line from x1,y1 to x2,y2
+	static final int STRIDE=5;			//colour, x1, y1, x2, y2
+	
+	private static final int CURSOR_MASK=0xFFFF;		//slots reserved
+	private static final int WRITER=1<<16;				//one writer filling a slot (up to 2^15 at a time)
+	private static final int WRITER_MASK=0x7FFF<<16;
+	private static final int CLOSED=1<<31;				//drained: no slot may be reserved until reopened
+	
+	private final AtomicInteger state=new AtomicInteger();
+	private final AtomicIntegerArray kinds=new AtomicIntegerArray(CAPACITY);	//0 for slots not (yet) written
+	private final int[] data=new int[CAPACITY*STRIDE];
+	
+	//Adds a command (POINT or LINE) with the colour (RGB) and coordinates supplied; returns false if the buffer is full or drained
+	boolean add(int kind,int color,int x1,int y1,int x2,int y2)
+	{
+		int current,index;
+		
+		do
+		{
+			current=state.get();
+			index=current&CURSOR_MASK;
+			
+			if((current&CLOSED)!=0 || index>=CAPACITY)
+				return false;
+		}
+		while(!state.compareAndSet(current,current+1+WRITER));
+		
+		int offset=index*STRIDE;
+		data[offset]=color;
+		data[offset+1]=x1;
+		data[offset+2]=y1;
+		data[offset+3]=x2;
+		data[offset+4]=y2;
+		kinds.lazySet(index,kind);
+		state.addAndGet(-WRITER);
+		
+		return true;
+	}
+	
+	/*
+	 * Closes the buffer and copies the commands that have been completed into the arrays supplied (at least CAPACITY
+	 * and CAPACITY*STRIDE long); returns the number of commands copied. Commands that are still being written are
+	 * dropped. Called once the buffer has been swapped out, so hardly any writer is still using it. A buffer that
+	 * could not be reopened yields no commands, as those it holds have been drained before.
+	 */
+	int drainTo(int[] kindsOut,int[] dataOut)
+	{
+		int current=close();
+		
+		if((current&CLOSED)!=0)
+			return 0;
+		
+		int size=current&CURSOR_MASK;
+		int count=0;
+		
+		for(int i=0;i<size;i++)
+		{
+			int kind=kinds.get(i);
+			
+			if(kind==0)
+				continue;
+			
+			kindsOut[count]=kind;
+			System.arraycopy(data,i*STRIDE,dataOut,count*STRIDE,STRIDE);
+			count++;
+		}
+		
+		return count;
+	}
+	
+	/*
+	 * Empties a drained buffer and accepts commands again; called before the buffer is swapped in. Returns false (and
+	 * the buffer stays closed, dropping the commands of the next time step) if a writer is still filling a slot.
+	 */
+	boolean reopen()
+	{
+		int current=state.get();
+		
+		if((current&CLOSED)==0)
+			return true;
+		
+		if((current&WRITER_MASK)!=0)
+			return false;
+		
+		//no writer can enter while the buffer is closed, so the slots reserved are all complete
+		int size=current&CURSOR_MASK;
+		
+		for(int i=0;i<size;i++)
+			kinds.lazySet(i,0);
+		
+		state.set(0);
+		
+		return true;
+	}
+	
+	//Sets the closed flag; returns the state before
+	private int close()
+	{
+		int current;
+		
+		do
+			current=state.get();
+		while(!state.compareAndSet(current,current|CLOSED));
+		
+		return current;
+	}
+}
@@ -0,0 +1,276 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Keeps the last time steps of a game in memory so that they can be saved when something goes wrong (e.g., a
+ * controller times out or Ms Pac-Man loses a life), without recording every game in full. The recorder is attached
+ * to a game (see _G_.setFlightRecorder(-)) and holds, in arrays allocated once, the packed actions of the last
+ * 'capacity' time steps (2 bytes each, see ReplayWriter.pack(-)) and a keyframe every 'keyframeInterval' time steps.
+ * Recording a time step costs a few array writes; only a keyframe copies the state.
+ * 
+ * After every time step, the triggers are checked. When one fires (or trigger(-) is called), the recorded time steps
+ * are dumped to a binary replay, starting from the oldest keyframe still covered by the actions. The replay may be
+ * played, verified and compared like any other (see ReplayWriter.START).
+ */
+public final class FlightRecorder
+{
+	public static final int DEFAULT_CAPACITY=4096;
+	public static final int DEFAULT_KEYFRAME_INTERVAL=512;
+	
+	/*
+	 * Decides after every time step whether the recorded time steps should be dumped
+	 */
+	public interface Trigger
+	{
+		public void start(Game game);		//called when a new game is started
+		public String check(Game game);		//called after every time step; returns the reason for a dump, null if there is none
+	}
+	
+	private final String prefix;
+	private final int capacity,keyframeInterval;
+	private final short[] frames;
+	private final ByteBuffer[] keyframes;
+	private final int[] keyframeTimes,keyframeMazes;
+	private final List<Trigger> triggers=new ArrayList<Trigger>();
+	private String pacManName="",ghostName="";
+	private long seed;
+	private int startTime,time,lastDump,numDumps;
+	
+	//Dumps are written to files named prefix-number-time-reason.mpr
+	public FlightRecorder(String prefix)
+	{
+		this(prefix,DEFAULT_CAPACITY,DEFAULT_KEYFRAME_INTERVAL);
+	}
+	
+	//A keyframe must fall within the time steps recorded, so the interval may not exceed the capacity
+	public FlightRecorder(String prefix,int capacity,int keyframeInterval)
+	{
+		if(capacity<=0 || keyframeInterval<=0 || keyframeInterval>capacity)
+			throw new IllegalArgumentException("Invalid capacity or keyframe interval: "+capacity+", "+keyframeInterval);
+		
+		this.prefix=prefix;
+		this.capacity=capacity;
+		this.keyframeInterval=keyframeInterval;
+		this.frames=new short[capacity];
+		this.keyframes=new ByteBuffer[capacity/keyframeInterval+2];
+		this.keyframeTimes=new int[keyframes.length];
+		this.keyframeMazes=new int[keyframes.length];
+		
+		Arrays.fill(keyframeTimes,-1);
+	}
+	
+	//Fires when Ms Pac-Man loses a life
+	public static Trigger onDeath()
+	{
+		return new Trigger()
+		{
+			private int livesRemaining;
+			
+			public void start(Game game)
+			{
+				livesRemaining=game.getLivesRemaining();
+			}
+			
+			public String check(Game game)
+			{
+				boolean died=game.getLivesRemaining()<livesRemaining;
+				livesRemaining=game.getLivesRemaining();
+				
+				return died ? "death" : null;
+			}
+		};
+	}
+	
+	//Fires when the score decreases, which the rules do not allow (e.g., after changes to the engine)
+	public static Trigger onScoreRegression()
+	{
+		return new Trigger()
+		{
+			private int score;
+			
+			public void start(Game game)
+			{
+				score=game.getScore();
+			}
+			
+			public String check(Game game)
+			{
+				boolean regression=game.getScore()<score;
+				score=game.getScore();
+				
+				return regression ? "score" : null;
+			}
+		};
+	}
+	
+	//Fires when the game ends with fewer points than the score supplied
+	public static Trigger onGameOverBelow(final int minScore)
+	{
+		return new Trigger()
+		{
+			public void start(Game game){}
+			
+			public String check(Game game)
+			{
+				return game.gameOver() && game.getScore()<minScore ? "below"+minScore : null;
+			}
+		};
+	}
+	
+	public FlightRecorder addTrigger(Trigger trigger)
+	{
+		triggers.add(trigger);
+		
+		return this;
+	}
+	
+	//Names of the controllers stored in the dumps
+	public void setControllerNames(String pacManName,String ghostName)
+	{
+		this.pacManName=pacManName;
+		this.ghostName=ghostName;
+	}
+	
+	//Forgets the time steps recorded so far and starts recording the game supplied (see _G_.setFlightRecorder(-))
+	public void start(_G_ game)
+	{
+		startTime=time=game.getTotalTime();
+		seed=game.getSeed();
+		lastDump=startTime-keyframeInterval;
+		
+		Arrays.fill(keyframeTimes,-1);
+		
+		saveKeyframe(game);
+		
+		for(int i=0;i<triggers.size();i++)
+			triggers.get(i).start(game);
+	}
+	
+	//Records the actions just taken (see advanceGame(-)) and checks the triggers
+	void record(int[] actionsTaken,G game)
+	{
+		frames[time%capacity]=ReplayWriter.pack(actionsTaken);
+		time=game.getTotalTime();
+		
+		if(time%keyframeInterval==0)
+			saveKeyframe(game);
+		
+		for(int i=0;i<triggers.size();i++)
+		{
+			String reason=triggers.get(i).check(game);
+			
+			if(reason!=null)
+				trigger(reason);
+		}
+	}
+	
+	//Keyframes are kept in the slot of their interval; the buffers are only re-allocated if a state grows larger
+	private void saveKeyframe(G game)
+	{
+		int slot=(time/keyframeInterval)%keyframes.length;
+		int size=game.getStateSize();
+		
+		if(keyframes[slot]==null || keyframes[slot].capacity()<size)
+			keyframes[slot]=ByteBuffer.allocate(size);
+		
+		keyframes[slot].clear();
+		game.saveState(keyframes[slot]);
+		keyframes[slot].flip();
+		keyframeTimes[slot]=time;
+		keyframeMazes[slot]=game.getCurMaze();
+	}
+	
+	/*
+	 * Dumps the recorded time steps because of the reason supplied, unless a dump has been written in the last
+	 * keyframeInterval time steps (e.g., a controller that keeps timing out). Returns the file name, null if nothing
+	 * was written.
+	 */
+	public String trigger(String reason)
+	{
+		if(time-lastDump<keyframeInterval)
+			return null;
+		
+		String fileName=prefix+"-"+numDumps+"-"+time+"-"+reason+ReplayWriter.BINARY_EXTENSION;
+		
+		try
+		{
+			dump(fileName);
+		}
+		catch(IOException e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+		
+		lastDump=time;
+		numDumps++;
+		
+		return fileName;
+	}
+	
+	//Writes the recorded time steps to the file specified, from the oldest keyframe whose time steps are all still recorded
+	public void dump(String fileName) throws IOException
+	{
+		int oldest=Math.max(startTime,time-capacity);
+		int first=-1;
+		
+		for(int i=0;i<keyframeTimes.length;i++)
+			if(keyframeTimes[i]>=oldest && keyframeTimes[i]<=time && (first==-1 || keyframeTimes[i]<keyframeTimes[first]))
+				first=i;
+		
+		if(first==-1)
+			throw new IOException("No keyframe recorded since time step "+oldest);
+		
+		ReplayWriter writer=new ReplayWriter(fileName,seed,keyframeMazes[first],pacManName,ghostName);
+		
+		try
+		{
+			writer.setStartTime(keyframeTimes[first]);
+			
+			for(int t=keyframeTimes[first];t<time;t+=keyframeInterval-t%keyframeInterval)
+			{
+				int slot=(t/keyframeInterval)%keyframes.length;
+				
+				if(keyframeTimes[slot]==t)
+					writer.writeKeyframe(t,keyframes[slot].duplicate());
+			}
+			
+			for(int t=keyframeTimes[first];t<time;t++)
+				writer.writeFrame(frames[t%capacity]);
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+	
+	//Number of dumps written since the recorder was created
+	public int getNumDumps()
+	{
+		return numDumps;
+	}
+	
+	//Time step of the last action recorded plus one
+	public int getTime()
+	{
+		return time;
+	}
+}
@@ -20,10 +20,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 //import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.BitSet;
-import java.util.Arrays;
 
 /*
  * Simple implementation of Ms Pac-Man. The class Game contains all code relating to the
@@ -36,7 +35,7 @@ public class G implements Game
 	protected static Maze[] mazes=new Maze[NUM_MAZES];			
 	
 	//Variables (game state):
-	protected BitSet pills,powerPills;
+	protected PillSet pills,powerPills;
 	//level-specific
 	protected int curMaze,totLevel,levelTime,totalTime,score,ghostEatMultiplier;
 	protected boolean gameOver;
@@ -45,6 +44,17 @@ public class G implements Game
 	protected boolean extraLife;
 	//ghosts-specific
 	protected int[] curGhostLocs,lastGhostDirs,edibleTimes,lairTimes;
+	//random events (repaired directions, ghost reversals)
+	protected long seed;
+	//listeners (not part of the state; copies have none) and the events of the current time step, null without listeners
+	private GameListener[] listeners=NO_LISTENERS;
+	private GameEvents events;
+	
+	private static final GameListener[] NO_LISTENERS=new GameListener[0];	//shared by all games without listeners
+	
+	//Random number generator of the engine: same as java.util.Random, but part of the state so that a game is
+	//determined by its seed (and the actions of the controllers)
+	private static final long MULTIPLIER=0x5DEECE66DL,ADDEND=0xBL,MASK=(1L<<48)-1;
 	
 	/////////////////////////////////////////////////////////////////////////////
 	/////////////////  Constructors and Initialisers   //////////////////////////
@@ -53,20 +63,53 @@ public class G implements Game
 	//Constructor
 	protected G(){}
 
-	//loads the mazes and store them
+	//loads the mazes and store them (games may be created by several threads at once)
 	protected void init()
-	{		
-		for(int i=0;i<mazes.length;i++)
-			if(mazes[i]==null)
-				mazes[i]=new Maze(i);		
+	{
+		synchronized(mazes)
+		{
+			for(int i=0;i<mazes.length;i++)
+				if(mazes[i]==null)
+					mazes[i]=new Maze(i);
+		}
 	}
 	
-	//Creates an exact copy of the game
+	//Creates a copy of the game (forward model): the state is copied, but not the random events (see copyInto(-))
 	public Game copy()
 	{
-		G copy=new G();
-		copy.pills=(BitSet)pills.clone();
-		copy.powerPills=(BitSet)powerPills.clone();		
+		return copyInto(new G());
+	}
+	
+	//Copies the game into the one supplied, which may then be used as a forward model. Apart from the first
+	//time an instance is used, nothing is allocated: this is what GamePool relies on to recycle copies. The random
+	//events are not copied: forward models must not foresee those of the game, so every copy is given a seed of
+	//its own, derived from the seed of the game and the number of copies made by the current thread (see
+	//GamePool.nextCopy()). The game itself is not changed, so a snapshot shared by several threads may be copied
+	public Game copyInto(Game target)
+	{
+		if(!(target instanceof G))
+			throw new IllegalArgumentException("Can only copy into games created by the engine: "+target);
+		
+		if(target instanceof GameSnapshot)
+			throw new UnsupportedOperationException("A game snapshot is read-only");
+		
+		G copy=copyState((G)target);
+		copy.seed=scramble(mix(seed+GamePool.nextCopy()*0x9E3779B97F4A7C15L));
+		
+		return copy;
+	}
+	
+	//Returns a read-only snapshot of the game that may be shared by several controllers (see GameSnapshot)
+	public GameSnapshot snapshot()
+	{
+		return (GameSnapshot)copyState(new GameSnapshot());
+	}
+	
+	//Copies the state of the game into the game supplied
+	G copyState(G copy)
+	{
+		copy.pills=pills;				//pill sets are persistent, hence shared
+		copy.powerPills=powerPills;
 		copy.curMaze=curMaze;
 		copy.totLevel=totLevel;
 		copy.levelTime=levelTime;
@@ -78,14 +121,156 @@ public class G implements Game
 		copy.lastPacManDir=lastPacManDir;
 		copy.livesRemaining=livesRemaining;
 		copy.extraLife=extraLife;
-		copy.curGhostLocs=Arrays.copyOf(curGhostLocs,curGhostLocs.length);
-		copy.lastGhostDirs=Arrays.copyOf(lastGhostDirs,lastGhostDirs.length);
-		copy.edibleTimes=Arrays.copyOf(edibleTimes,edibleTimes.length);
-		copy.lairTimes=Arrays.copyOf(lairTimes,lairTimes.length);
+		copy.seed=seed;
+		
+		if(copy.curGhostLocs==null)
+		{
+			copy.curGhostLocs=new int[curGhostLocs.length];
+			copy.lastGhostDirs=new int[lastGhostDirs.length];
+			copy.edibleTimes=new int[edibleTimes.length];
+			copy.lairTimes=new int[lairTimes.length];
+		}
+		
+		System.arraycopy(curGhostLocs,0,copy.curGhostLocs,0,curGhostLocs.length);
+		System.arraycopy(lastGhostDirs,0,copy.lastGhostDirs,0,lastGhostDirs.length);
+		System.arraycopy(edibleTimes,0,copy.edibleTimes,0,edibleTimes.length);
+		System.arraycopy(lairTimes,0,copy.lairTimes,0,lairTimes.length);
 		
 		return copy;
 	}
 	
+	//Number of bytes written by saveState(-)
+	int getStateSize()
+	{
+		return 9*4+2+4*NUM_GHOSTS*4+pills.getStateSize()+powerPills.getStateSize();
+	}
+	
+	//Writes the complete state of the game (e.g., for the keyframes of a replay)
+	void saveState(ByteBuffer buffer)
+	{
+		buffer.putInt(curMaze);
+		buffer.putInt(totLevel);
+		buffer.putInt(levelTime);
+		buffer.putInt(totalTime);
+		buffer.putInt(score);
+		buffer.putInt(ghostEatMultiplier);
+		buffer.putInt(curPacManLoc);
+		buffer.putInt(lastPacManDir);
+		buffer.putInt(livesRemaining);
+		buffer.put((byte)(gameOver ? 1 : 0));
+		buffer.put((byte)(extraLife ? 1 : 0));
+		
+		for(int i=0;i<NUM_GHOSTS;i++)
+		{
+			buffer.putInt(curGhostLocs[i]);
+			buffer.putInt(lastGhostDirs[i]);
+			buffer.putInt(edibleTimes[i]);
+			buffer.putInt(lairTimes[i]);
+		}
+		
+		pills.saveState(buffer);
+		powerPills.saveState(buffer);
+	}
+	
+	//Restores a state written by saveState(-)
+	void loadState(ByteBuffer buffer)
+	{
+		init();		//load mazes if not yet loaded
+		
+		curMaze=buffer.getInt();
+		totLevel=buffer.getInt();
+		levelTime=buffer.getInt();
+		totalTime=buffer.getInt();
+		score=buffer.getInt();
+		ghostEatMultiplier=buffer.getInt();
+		curPacManLoc=buffer.getInt();
+		lastPacManDir=buffer.getInt();
+		livesRemaining=buffer.getInt();
+		gameOver=buffer.get()!=0;
+		extraLife=buffer.get()!=0;
+		
+		if(curGhostLocs==null)
+		{
+			curGhostLocs=new int[NUM_GHOSTS];
+			lastGhostDirs=new int[NUM_GHOSTS];
+			edibleTimes=new int[NUM_GHOSTS];
+			lairTimes=new int[NUM_GHOSTS];
+		}
+		
+		for(int i=0;i<NUM_GHOSTS;i++)
+		{
+			curGhostLocs[i]=buffer.getInt();
+			lastGhostDirs[i]=buffer.getInt();
+			edibleTimes[i]=buffer.getInt();
+			lairTimes[i]=buffer.getInt();
+		}
+		
+		pills=PillSet.loadState(buffer);
+		powerPills=PillSet.loadState(buffer);
+	}
+	
+	//Hash of the state of the game (as written by saveState(-)), used to compare games cheaply (see ReplayWriter)
+	long hashState()
+	{
+		long hash=pills.hash()*31+powerPills.hash();
+		
+		hash=hash*31+curMaze;
+		hash=hash*31+totLevel;
+		hash=hash*31+levelTime;
+		hash=hash*31+totalTime;
+		hash=hash*31+score;
+		hash=hash*31+ghostEatMultiplier;
+		hash=hash*31+curPacManLoc;
+		hash=hash*31+lastPacManDir;
+		hash=hash*31+livesRemaining;
+		hash=hash*31+(gameOver ? 1 : 0);
+		hash=hash*31+(extraLife ? 1 : 0);
+		
+		for(int i=0;i<NUM_GHOSTS;i++)
+		{
+			hash=hash*31+curGhostLocs[i];
+			hash=hash*31+lastGhostDirs[i];
+			hash=hash*31+edibleTimes[i];
+			hash=hash*31+lairTimes[i];
+		}
+		
+		return hash;
+	}
+	
+	//Turns a seed into the state of the random number generator
+	protected static long scramble(long seed)
+	{
+		return (seed^MULTIPLIER)&MASK;
+	}
+	
+	//Spreads the bits of a value over all bits of the result (the finaliser of SplitMix64)
+	private static long mix(long value)
+	{
+		value=(value^(value>>>30))*0xBF58476D1CE4E5B9L;
+		value=(value^(value>>>27))*0x94D049BB133111EBL;
+		
+		return value^(value>>>31);
+	}
+	
+	private int next(int bits)
+	{
+		seed=(seed*MULTIPLIER+ADDEND)&MASK;
+		
+		return (int)(seed>>>(48-bits));
+	}
+	
+	//Returns a random number in 0..bound-1
+	protected int nextInt(int bound)
+	{
+		return (int)((bound*(long)next(31))>>31);
+	}
+	
+	//Returns a random number in [0,1)
+	protected double nextDouble()
+	{
+		return (((long)next(26)<<27)+next(27))*0x1.0p-53;
+	}
+	
 	//If pac-man has been eaten or a new level has been reached
 	protected void reset(boolean newLevel)
 	{
@@ -94,17 +279,15 @@ public class G implements Game
 			curMaze=(curMaze+1)%G.NUM_MAZES;
 			totLevel++;
 			levelTime=0;	
-			pills=new BitSet(getNumberPills());
-			pills.set(0,getNumberPills());
-			powerPills=new BitSet(getNumberPowerPills());
-			powerPills.set(0,getNumberPowerPills());
+			pills=new PillSet(getNumberPills());
+			powerPills=new PillSet(getNumberPowerPills());
 		}
 		
 		curPacManLoc=getInitialPacPosition();
 		lastPacManDir=G.INITIAL_PAC_DIR;
 		
 		Arrays.fill(curGhostLocs,mazes[curMaze].lairPosition);	
-		lastGhostDirs=Arrays.copyOf(G.INITIAL_GHOST_DIRS,G.INITIAL_GHOST_DIRS.length);
+		System.arraycopy(G.INITIAL_GHOST_DIRS,0,lastGhostDirs,0,lastGhostDirs.length);
 	
 		Arrays.fill(edibleTimes,0);		
 		ghostEatMultiplier=1;
@@ -117,9 +300,41 @@ public class G implements Game
 	/////////////////////////////  Game Play   //////////////////////////////////
 	/////////////////////////////////////////////////////////////////////////////
 			
+	//Registers a listener to be told about the events of every time step played from now on (see GameEvents)
+	public void addListener(GameListener listener)
+	{
+		listeners=Arrays.copyOf(listeners,listeners.length+1);
+		listeners[listeners.length-1]=listener;
+		
+		if(events==null)
+			events=new GameEvents();
+	}
+	
+	public void removeListener(GameListener listener)
+	{
+		for(int i=0;i<listeners.length;i++)
+			if(listeners[i]==listener)
+			{
+				GameListener[] remaining=new GameListener[listeners.length-1];
+				System.arraycopy(listeners,0,remaining,0,i);
+				System.arraycopy(listeners,i+1,remaining,i,remaining.length-i);
+				listeners=remaining;
+				break;
+			}
+		
+		if(listeners.length==0)
+		{
+			listeners=NO_LISTENERS;
+			events=null;
+		}
+	}
+	
 	//Central method that advances the game state
 	public int[] advanceGame(int pacManDir,int[] ghostDirs)
 	{			
+		if(events!=null)
+			events.clear(totalTime);
+		
 		updatePacMan(pacManDir);			//move pac-man		
 		eatPill();							//eat a pill
 		boolean reverse=eatPowerPill();		//eat a power pill
@@ -144,12 +359,19 @@ public class G implements Game
 		{
 			extraLife=true;
 			livesRemaining++;
+			
+			if(events!=null)
+				events.add(GameEvents.EXTRA_LIFE,curPacManLoc,-1,livesRemaining);
 		}
 	
 		totalTime++;
 		levelTime++;
 		checkLevelState();	//check if level/game is over
 		
+		if(events!=null)
+			for(int i=0;i<listeners.length;i++)
+				listeners[i].gameAdvanced(this,events);
+		
 		return actionsTakens;
 	}
 	
@@ -178,7 +400,7 @@ public class G implements Game
 			else
 			{
 				int[] options=getPossiblePacManDirs(true);
-				direction=options[G.rnd.nextInt(options.length)];
+				direction=options[nextInt(options.length)];
 			}
 
 		return direction;		
@@ -224,7 +446,7 @@ public class G implements Game
 			else
 			{
 				int[] options=getPossibleGhostDirs(whichGhost);
-				direction=options[G.rnd.nextInt(options.length)];
+				direction=options[nextInt(options.length)];
 			}
 		}
 
@@ -239,7 +461,10 @@ public class G implements Game
 		if(pillIndex>=0 && pills.get(pillIndex))
 		{
 			score+=G.PILL;
-			pills.clear(pillIndex);
+			pills=pills.clear(pillIndex);
+			
+			if(events!=null)
+				events.add(GameEvents.PILL_EATEN,curPacManLoc,-1,pillIndex);
 		}
 	}
 	
@@ -253,7 +478,10 @@ public class G implements Game
 		{
 			score+=G.POWER_PILL;
 			ghostEatMultiplier=1;
-			powerPills.clear(powerPillIndex);
+			powerPills=powerPills.clear(powerPillIndex);
+			
+			if(events!=null)
+				events.add(GameEvents.POWER_PILL_EATEN,curPacManLoc,-1,powerPillIndex);
 			
 			//This ensures that only ghosts outside the lair (i.e., inside the maze) turn edible
 			int newEdibleTime=(int)(G.EDIBLE_TIME*(Math.pow(G.EDIBLE_TIME_REDUCTION,totLevel)));
@@ -268,9 +496,17 @@ public class G implements Game
 //			Arrays.fill(edibleTimes,(int)(G.EDIBLE_TIME*(Math.pow(G.EDIBLE_TIME_REDUCTION,totLevel))));						
 			
 			reverse=true;
+			
+			if(events!=null)
+				events.add(GameEvents.GHOSTS_REVERSED,-1,-1,1);
 		}
-		else if(levelTime>1 && Math.random()<G.GHOST_REVERSAL)	//random ghost reversal
+		else if(levelTime>1 && nextDouble()<G.GHOST_REVERSAL)	//random ghost reversal
+		{
 			reverse=true;
+			
+			if(events!=null)
+				events.add(GameEvents.GHOSTS_REVERSED,-1,-1,0);
+		}
 		
 		return reverse;
 	}
@@ -286,6 +522,9 @@ public class G implements Game
 			{
 				if(edibleTimes[i]>0)									//pac-man eats ghost
 				{
+					if(events!=null)
+						events.add(GameEvents.GHOST_EATEN,curGhostLocs[i],i,G.GHOST_EAT_SCORE*ghostEatMultiplier);
+					
 					score+=G.GHOST_EAT_SCORE*ghostEatMultiplier;
 					ghostEatMultiplier*=2;
 					edibleTimes[i]=0;					
@@ -297,6 +536,9 @@ public class G implements Game
 				{
 					livesRemaining--;
 					
+					if(events!=null)
+						events.add(GameEvents.PACMAN_EATEN,curPacManLoc,i,livesRemaining);
+					
 					if(livesRemaining<=0)
 					{
 						gameOver=true;
@@ -319,6 +561,9 @@ public class G implements Game
 		//if all pills have been eaten or the time is up...
 		if((pills.isEmpty() && powerPills.isEmpty()) || levelTime>=LEVEL_LIMIT)
 		{
+			if(events!=null)
+				events.add(pills.isEmpty() && powerPills.isEmpty() ? GameEvents.LEVEL_CLEARED : GameEvents.LEVEL_TIMED_OUT,-1,-1,totLevel);
+			
 			//award any remaining pills to Ms Pac-Man
 			score+=G.PILL*pills.cardinality()+G.POWER_PILL*powerPills.cardinality();			 
 			
@@ -481,6 +726,16 @@ public class G implements Game
 		return (isJunction(curGhostLocs[whichGhost]) && (edibleTimes[whichGhost]==0 || edibleTimes[whichGhost]%GHOST_SPEED_REDUCTION!=0));
 	}
 	
+	//If at a junction or if Ms Pac-Man cannot continue in the direction last taken (i.e., anywhere but a straight
+	//corridor, where the only options are to continue or to reverse)
+	public boolean pacManRequiresAction()
+	{
+		if(lastPacManDir<0 || lastPacManDir>3 || isJunction(curPacManLoc))
+			return true;
+		
+		return mazes[curMaze].graph[curPacManLoc].neighbours[lastPacManDir]==-1;
+	}
+	
 	//Returns name of maze: A, B, C, D
 	public String getName()
 	{
@@ -536,6 +791,21 @@ public class G implements Game
 		return mazes[curMaze].graph[nodeIndex].powerPillIndex;
 	}
 	
+	//Returns the neighbours of all nodes of the maze specified ([node][direction], -1 if there is none), loading the
+	//mazes if required. Allows controllers to work out maze-specific information before any game is played
+	public static int[][] getMazeNeighbours(int maze)
+	{
+		new G().init();
+		
+		Node[] graph=mazes[maze].graph;
+		int[][] neighbours=new int[graph.length][];
+		
+		for(int i=0;i<graph.length;i++)
+			neighbours[i]=Arrays.copyOf(graph[i].neighbours,graph[i].neighbours.length);
+		
+		return neighbours;
+	}
+	
 	//Returns the neighbour of node index that corresponds to direction. In the case of neutral, the 
 	//same node index is returned
 	public int getNeighbour(int nodeIndex,int direction)
@@ -616,6 +886,73 @@ public class G implements Game
 		return indices;
 	}
 
+	//Returns the active pill closest to the node specified (PATH distance). The pills are visited in the
+	//pre-computed order of the maze (nearest first) and those that have been eaten are skipped
+	public int getNearestActivePill(int from)
+	{
+		int[] order=mazes[curMaze].getPillOrder(from);
+		
+		for(int i=0;i<order.length;i++)
+			if(pills.get(order[i]))
+				return mazes[curMaze].pillIndices[order[i]];
+		
+		return -1;
+	}
+	
+	//Returns the active power pill closest to the node specified (PATH distance)
+	public int getNearestActivePowerPill(int from)
+	{
+		int[] order=mazes[curMaze].getPowerPillOrder(from);
+		
+		for(int i=0;i<order.length;i++)
+			if(powerPills.get(order[i]))
+				return mazes[curMaze].powerPillIndices[order[i]];
+		
+		return -1;
+	}
+	
+	//Returns the active pill or power pill closest to the node specified. Ties are resolved in favour of
+	//the pill, as getTarget(-) does for an array of active pills followed by active power pills
+	public int getNearestActivePillOrPowerPill(int from)
+	{
+		int pill=getNearestActivePill(from);
+		int powerPill=getNearestActivePowerPill(from);
+		
+		if(pill==-1)
+			return powerPill;
+		
+		if(powerPill==-1 || getPathDistance(pill,from)<=getPathDistance(powerPill,from))
+			return pill;
+		
+		return powerPill;
+	}
+	
+	//Returns (at most) the k active pills closest to the node specified, nearest first
+	public int[] getNearestActivePills(int from,int k)
+	{
+		return getNearestActive(mazes[curMaze].getPillOrder(from),mazes[curMaze].pillIndices,pills,k);
+	}
+	
+	//Returns (at most) the k active power pills closest to the node specified, nearest first
+	public int[] getNearestActivePowerPills(int from,int k)
+	{
+		return getNearestActive(mazes[curMaze].getPowerPillOrder(from),mazes[curMaze].powerPillIndices,powerPills,k);
+	}
+	
+	//Collects the first k active entries of a pre-computed order
+	private int[] getNearestActive(int[] order,int[] nodeIndices,PillSet active,int k)
+	{
+		int[] nearest=new int[Math.max(0,Math.min(k,active.cardinality()))];
+		
+		int index=0;
+		
+		for(int i=0;i<order.length && index<nearest.length;i++)
+			if(active.get(order[i]))
+				nearest[index++]=nodeIndices[order[i]];
+		
+		return nearest;
+	}
+
 	//Returns the number of neighbours of a node: 2, 3 or 4. Exception: lair, which has no neighbours
 	public int getNumNeighbours(int nodeIndex)
 	{
@@ -870,6 +1207,102 @@ public class G implements Game
 		return neighbours;
 	}		
 	
+	/*
+	 * Persistent set of (power) pills, used in place of a BitSet. The words of a set are never modified once
+	 * it has been created: clear(-) returns a new set if the pill was still available. Hence copy() only needs
+	 * to share the reference and a forward model that never eats a pill never allocates one. The number of
+	 * pills is kept as well so that cardinality() and isEmpty() are constant time.
+	 */
+	protected static final class PillSet
+	{
+		private final long[] words;
+		private final int count;
+		
+		//Creates a set with all pills 0..size-1 available
+		protected PillSet(int size)
+		{
+			this.words=new long[(size+63)>>>6];
+			this.count=size;
+			
+			for(int i=0;i<size;i+=64)
+				words[i>>>6]=size-i>=64 ? -1L : (1L<<(size-i))-1;
+		}
+		
+		private PillSet(long[] words,int count)
+		{
+			this.words=words;
+			this.count=count;
+		}
+		
+		//Whether the pill specified is still available (false for indices beyond the size of the set, as for a BitSet)
+		protected boolean get(int index)
+		{
+			int word=index>>>6;
+			
+			return word<words.length && (words[word] & (1L<<index))!=0;
+		}
+		
+		//Returns the set without the pill specified; the set itself is returned if the pill is not available
+		protected PillSet clear(int index)
+		{
+			if(!get(index))
+				return this;
+			
+			long[] cleared=Arrays.copyOf(words,words.length);
+			cleared[index>>>6]&=~(1L<<index);
+			
+			return new PillSet(cleared,count-1);
+		}
+		
+		protected int cardinality()
+		{
+			return count;
+		}
+		
+		//Number of bytes written by saveState(-)
+		protected int getStateSize()
+		{
+			return 2+words.length*8;
+		}
+		
+		protected long hash()
+		{
+			long hash=count;
+			
+			for(int i=0;i<words.length;i++)
+				hash=hash*31+words[i];
+			
+			return hash;
+		}
+		
+		protected void saveState(ByteBuffer buffer)
+		{
+			buffer.putShort((short)words.length);
+			
+			for(int i=0;i<words.length;i++)
+				buffer.putLong(words[i]);
+		}
+		
+		protected static PillSet loadState(ByteBuffer buffer)
+		{
+			long[] words=new long[buffer.getShort()];
+			int count=0;
+			
+			for(int i=0;i<words.length;i++)
+			{
+				words[i]=buffer.getLong();
+				count+=Long.bitCount(words[i]);
+			}
+			
+			return new PillSet(words,count);
+		}
+		
+		protected boolean isEmpty()
+		{
+			return count==0;
+		}
+	}
+	
 	/*
 	 * Stores the actual mazes, each of which is simply a connected graph. The differences between the mazes are the connectivity
 	 * and the x,y coordinates (used for drawing or to compute the Euclidean distance. There are 3 built-in distance functions in
@@ -886,6 +1319,7 @@ public class G implements Game
 		protected int initialPacPosition,lairPosition,initialGhostsPosition,width,height;	//Maze-specific information
 		protected String name; //Name of the Maze
 		protected int[][] coordinates;
+		private volatile int[][] pillOrders,powerPillOrders;								//Pill indices sorted by distance, for every node (computed when first needed)
 					
 		/*
 		 * Each maze is stored as a (connected) graph: all nodes have neighbours, stored in an array of length 4. The
@@ -959,6 +1393,74 @@ public class G implements Game
 	        }
 		}
 		
+		//Returns the pill indices of the maze, sorted by their PATH distance from the node specified
+		protected int[] getPillOrder(int nodeIndex)
+		{
+			if(pillOrders==null)
+				buildPillOrders();
+			
+			return pillOrders[nodeIndex];
+		}
+		
+		//Returns the power pill indices of the maze, sorted by their PATH distance from the node specified
+		protected int[] getPowerPillOrder(int nodeIndex)
+		{
+			if(powerPillOrders==null)
+				buildPillOrders();
+			
+			return powerPillOrders[nodeIndex];
+		}
+		
+		/*
+		 * Sorts the pills and power pills by distance for every node in the maze. The orders are immutable and shared
+		 * by all games (and copies) using this maze: the game state only decides which entries are skipped. Ties are
+		 * broken by the pill index so that queries agree with getTarget(-) over the active pills.
+		 */
+		private synchronized void buildPillOrders()
+		{
+			if(pillOrders!=null)
+				return;
+			
+			int[][] powerOrders=new int[graph.length][];
+			int[][] orders=new int[graph.length][];
+			
+			for(int i=0;i<graph.length;i++)
+			{
+				orders[i]=sortByDistance(i,pillIndices);
+				powerOrders[i]=sortByDistance(i,powerPillIndices);
+			}
+			
+			powerPillOrders=powerOrders;
+			pillOrders=orders;
+		}
+		
+		//Sorts the indices of the targets supplied by distance from the node specified
+		private int[] sortByDistance(int from,int[] targets)
+		{
+			int[] keys=new int[targets.length];
+			
+			for(int i=0;i<targets.length;i++)
+				keys[i]=getDistance(from,targets[i])*targets.length+i;
+			
+			Arrays.sort(keys);
+			
+			for(int i=0;i<keys.length;i++)
+				keys[i]=keys[i]%targets.length;
+			
+			return keys;
+		}
+		
+		//Same as G.getPathDistance(-) but independent of the current maze
+		private int getDistance(int from,int to)
+		{
+			if(from==to)
+				return 0;		
+			else if(from<to)
+				return distances[((to*(to+1))/2)+from];
+			else
+				return distances[((from*(from+1))/2)+to];
+		}
+		
 		/*
 		 * Loads the shortest path distances which have been pre-computed. The data contains the shortest distance from
 		 * any node in the maze to any other node. Since the graph is symmetric, the symmetries have been removed to preserve
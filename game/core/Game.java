@@ -51,7 +51,8 @@ public interface Game{
 	
 	public static final Random rnd=new Random();
 	
-	public Game copy();												//returns an exact copy of the game (forward model)
+	public Game copy();												//returns a copy of the game (forward model); the random events are not copied
+	public Game copyInto(Game target);								//copies the game into a game previously obtained from copy() or GamePool and returns it (forward model without allocation)
 	public int[] advanceGame(int pacManDir,int[] ghostDirs);		//advances the game using the actions (directions) supplied; returns all directions played [PacMan, Ghost1, Ghost2, Ghost3, Ghost4]
 	public int getReverse(int direction);							//returns the reverse of the direction supplied
 	public boolean gameOver();										//returns true is Ms Pac-Man has lost all her lives or if MAX_LEVELS has been reached
@@ -77,6 +78,7 @@ public interface Game{
 	public int getNumberPowerPills();								//returns the total number of power pills in this maze (at the beginning of the level)
 	public int getLairTime(int whichGhost);							//returns the time remaining the ghost specified spends in the lair
 	public boolean ghostRequiresAction(int whichGhost);				//returns true of ghost is at a junction and a direction is needed	
+	public boolean pacManRequiresAction();							//returns true if Ms Pac-Man is at a junction or cannot continue in her current direction
 	public String getName();										//returns the name of the maze
 	public int getInitialPacPosition();								//returns the position where Ms Pac-Man starts at the beginning of the level
 	public int getInitialGhostsPosition();							//returns the position where the ghosts starts at the beginning of the level, AFTER leaving the lair
@@ -96,6 +98,12 @@ public interface Game{
 	public int[] getPillIndicesActive();							//returns the indices of all active pills in the maze
 	public int[] getPowerPillIndicesActive();						//returns the indices of all active power pills in the maze
 	
+	public int getNearestActivePill(int from);						//returns the node index of the active pill closest (PATH) to the node specified; -1 if none remain
+	public int getNearestActivePowerPill(int from);					//returns the node index of the active power pill closest (PATH) to the node specified; -1 if none remain
+	public int getNearestActivePillOrPowerPill(int from);			//returns the node index of the active pill or power pill closest (PATH) to the node specified; -1 if none remain
+	public int[] getNearestActivePills(int from,int k);				//returns the node indices of (at most) the k active pills closest (PATH) to the node specified, nearest first
+	public int[] getNearestActivePowerPills(int from,int k);		//returns the node indices of (at most) the k active power pills closest (PATH) to the node specified, nearest first
+	
 	public boolean isJunction(int nodeIndex);						//returns true if node is a junction (more than 2 neighbours)
 	public int getNumNeighbours(int nodeIndex);						//returns the number of neighbours of the node specified
 	
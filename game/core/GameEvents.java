@@ -0,0 +1,119 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+import java.util.Arrays;
+
+/*
+ * The events of one time step, as handed to the listeners of a game (see GameListener). The events are stored in
+ * primitive arrays that are allocated once per game and cleared at the start of every time step, so emitting an
+ * event does not allocate anything. Games without listeners do not have a buffer and emit nothing.
+ * 
+ * Every event has a type, the node at which it occurred and, depending on the type, a ghost and a value:
+ * 
+ * PILL_EATEN			node of the pill; value: index of the pill
+ * POWER_PILL_EATEN		node of the power pill; value: index of the power pill
+ * GHOST_EATEN			node of the ghost; ghost eaten; value: points scored
+ * PACMAN_EATEN			node of Ms Pac-Man; ghost that ate her; value: lives remaining
+ * EXTRA_LIFE			node of Ms Pac-Man; value: lives remaining
+ * LEVEL_CLEARED		all pills have been eaten; value: level completed
+ * LEVEL_TIMED_OUT		the time limit of the level has been reached; value: level completed
+ * GHOSTS_REVERSED		all ghosts reversed; value: 1 if caused by a power pill, 0 if at random
+ */
+public final class GameEvents
+{
+	public static final int PILL_EATEN=0;
+	public static final int POWER_PILL_EATEN=1;
+	public static final int GHOST_EATEN=2;
+	public static final int PACMAN_EATEN=3;
+	public static final int EXTRA_LIFE=4;
+	public static final int LEVEL_CLEARED=5;
+	public static final int LEVEL_TIMED_OUT=6;
+	public static final int GHOSTS_REVERSED=7;
+	public static final String[] NAMES={"pillEaten","powerPillEaten","ghostEaten","pacManEaten","extraLife","levelCleared","levelTimedOut","ghostsReversed"};
+	
+	private int[] types=new int[16],nodes=new int[16],ghosts=new int[16],values=new int[16];
+	private int numEvents,time;
+	
+	//Forgets the events of the previous time step
+	void clear(int time)
+	{
+		this.time=time;
+		numEvents=0;
+	}
+	
+	void add(int type,int node,int ghost,int value)
+	{
+		if(numEvents==types.length)	//cannot happen with the rules of the game, which bound the number of events per time step
+			grow();
+		
+		types[numEvents]=type;
+		nodes[numEvents]=node;
+		ghosts[numEvents]=ghost;
+		values[numEvents]=value;
+		numEvents++;
+	}
+	
+	private void grow()
+	{
+		types=Arrays.copyOf(types,types.length*2);
+		nodes=Arrays.copyOf(nodes,nodes.length*2);
+		ghosts=Arrays.copyOf(ghosts,ghosts.length*2);
+		values=Arrays.copyOf(values,values.length*2);
+	}
+	
+	//The time step in which the events occurred (the total time before it was played)
+	public int getTime()
+	{
+		return time;
+	}
+	
+	public int getNumEvents()
+	{
+		return numEvents;
+	}
+	
+	//The type of the i-th event (PILL_EATEN, etc.)
+	public int getType(int i)
+	{
+		return types[i];
+	}
+	
+	//The node at which the i-th event occurred (-1 for the end of a level)
+	public int getNode(int i)
+	{
+		return nodes[i];
+	}
+	
+	//The ghost of the i-th event (-1 if no ghost is involved)
+	public int getGhost(int i)
+	{
+		return ghosts[i];
+	}
+	
+	public int getValue(int i)
+	{
+		return values[i];
+	}
+	
+	public String toString()
+	{
+		StringBuilder sb=new StringBuilder();
+		
+		for(int i=0;i<numEvents;i++)
+			sb.append(i>0 ? ", " : "").append(NAMES[types[i]]).append("(node ").append(nodes[i]).append(", ghost ").append(ghosts[i]).append(", value ").append(values[i]).append(")");
+		
+		return time+": "+sb;
+	}
+}
@@ -0,0 +1,25 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+/*
+ * Receives the events of a game (pills and ghosts eaten, lives lost, etc.) as they happen, without having to compare
+ * the states before and after every time step. Listeners are registered with G.addListener(-) and called by the thread
+ * that advances the game. Copies of the game (forward models, snapshots) do not have listeners.
+ */
+public interface GameListener
+{
+	//Called after every time step with the events that occurred in it (possibly none); the events are only valid during the call
+	public void gameAdvanced(Game game,GameEvents events);
+}
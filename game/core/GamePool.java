@@ -0,0 +1,81 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+/*
+ * Thread-local pool of game instances for loops that need many short-lived copies of a game, such as the
+ * forward model of a search controller or the copies Exec hands to the controllers. copy(-) fills a recycled
+ * instance using Game.copyInto(-); release(-) hands it back once it is no longer used. Every thread has its
+ * own pool so no synchronisation is required. A game must not be used after it has been released.
+ */
+public final class GamePool
+{
+	private static final int MAX_SIZE=1024;		//games released beyond this are left to the garbage collector
+	
+	private static final ThreadLocal<GamePool> pools=new ThreadLocal<GamePool>()
+	{
+		protected GamePool initialValue()
+		{
+			return new GamePool();
+		}
+	};
+	
+	private G[] free=new G[16];
+	private int size;
+	private long numCopies;		//copies made by the thread, which determine their seeds (see G.copyInto(-))
+	
+	private GamePool(){}
+	
+	//Returns a copy of the game supplied, recycling a released instance of the current thread if possible
+	public static Game copy(Game game)
+	{
+		GamePool pool=pools.get();
+		
+		if(pool.size==0)
+			return game.copy();
+		
+		G recycled=pool.free[--pool.size];
+		pool.free[pool.size]=null;
+		
+		return game.copyInto(recycled);
+	}
+	
+	//Counts a copy made by the current thread; returns the number of copies made so far
+	static long nextCopy()
+	{
+		return ++pools.get().numCopies;
+	}
+	
+	//Hands a game obtained from copy(-) (or Game.copy()) back to the pool of the current thread. Anything else
+	//(e.g., the _G_ used by Exec) is ignored as recycling it would change the rules of the forward model
+	public static void release(Game game)
+	{
+		if(game==null || game.getClass()!=G.class)
+			return;
+		
+		GamePool pool=pools.get();
+		
+		if(pool.size==pool.free.length)
+		{
+			if(pool.size==MAX_SIZE)
+				return;
+			
+			G[] grown=new G[Math.min(MAX_SIZE,pool.size*2)];
+			System.arraycopy(pool.free,0,grown,0,pool.size);
+			pool.free=grown;
+		}
+		
+		pool.free[pool.size++]=(G)game;
+	}
+}
@@ -0,0 +1,473 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+
+/*
+ * Draws time steps of a game into an image, without any window: used by GameView for the display and by
+ * ReplayExporter to export replays as images. The frame is composed from layers: the maze (drawn once per maze),
+ * the pills (updated only when pills are eaten) and the sprites, debug information and text, which are the only
+ * regions redrawn in every frame. The regions drawn over the pill layer are remembered so they can be restored in
+ * the next frame, and the bounds of the regions that have changed are kept (see getDirtyX(), etc.).
+ * 
+ * The images of the mazes and sprites are loaded once and shared by all renderers; each renderer has its own layers,
+ * hence several renderers may be used at the same time by different threads.
+ */
+public final class GameRenderer
+{
+	private static String pathImages="images";
+	private static String[] mazes={"maze-a.png","maze-b.png","maze-c.png","maze-d.png"};
+	
+	private static BufferedImage[][] pacmanImgs;
+	private static BufferedImage[][][] ghostsImgs;
+	private static BufferedImage[] images;
+	
+	private int MAG=2;
+	private int pacManDir=G.INITIAL_PAC_DIR;
+	private Color debugColor;	//the colour drawn with last (colours are stored as RGB values)
+	
+	private final RenderState gameState=new RenderState();	//for render(Game)
+	private RenderState state;	//the time step being drawn
+	private final BufferedImage[] mazeLayers=new BufferedImage[4];
+	private BufferedImage pillLayer,offscreen;
+	private Graphics pillGraphics,bufferGraphics;
+	private int pillLayerMaze=-1;
+	private G.PillSet layerPills,layerPowerPills;	//the pills shown by the pill layer
+	private boolean[] pillsShown,powerPillsShown;
+	private int[] drawn=new int[4*16];				//regions drawn over the pill layer in the last frame (x, y, width, height)
+	private int numDrawn;
+	private int dirtyX1,dirtyY1,dirtyX2,dirtyY2;	//bounds of the regions changed in the current frame
+	private double[][] overlay;						//intensities drawn on the maze layers, for every maze and node (may be null)
+	
+	public GameRenderer()
+	{
+		loadImages();
+	}
+	
+	private static synchronized void loadImages()
+	{
+		if(images!=null)
+			return;
+		
+		pacmanImgs=new BufferedImage[4][3];
+		ghostsImgs=new BufferedImage[6][4][2];
+		
+		pacmanImgs[G.UP][0]=loadImage("mspacman-up-normal.png");
+		pacmanImgs[G.UP][1]=loadImage("mspacman-up-open.png");
+		pacmanImgs[G.UP][2]=loadImage("mspacman-up-closed.png");
+		pacmanImgs[G.RIGHT][0]=loadImage("mspacman-right-normal.png");
+		pacmanImgs[G.RIGHT][1]=loadImage("mspacman-right-open.png");
+		pacmanImgs[G.RIGHT][2]=loadImage("mspacman-right-closed.png");
+		pacmanImgs[G.DOWN][0]=loadImage("mspacman-down-normal.png");
+		pacmanImgs[G.DOWN][1]=loadImage("mspacman-down-open.png");
+		pacmanImgs[G.DOWN][2]=loadImage("mspacman-down-closed.png");
+		pacmanImgs[G.LEFT][0]=loadImage("mspacman-left-normal.png");
+		pacmanImgs[G.LEFT][1]=loadImage("mspacman-left-open.png");
+		pacmanImgs[G.LEFT][2]=loadImage("mspacman-left-closed.png");
+		
+		ghostsImgs[0][G.UP][0]=loadImage("blinky-up-1.png");
+		ghostsImgs[0][G.UP][1]=loadImage("blinky-up-2.png");
+		ghostsImgs[0][G.RIGHT][0]=loadImage("blinky-right-1.png");
+		ghostsImgs[0][G.RIGHT][1]=loadImage("blinky-right-2.png");
+		ghostsImgs[0][G.DOWN][0]=loadImage("blinky-down-1.png");
+		ghostsImgs[0][G.DOWN][1]=loadImage("blinky-down-2.png");
+		ghostsImgs[0][G.LEFT][0]=loadImage("blinky-left-1.png");
+		ghostsImgs[0][G.LEFT][1]=loadImage("blinky-left-2.png");
+		
+		ghostsImgs[1][G.UP][0]=loadImage("pinky-up-1.png");
+		ghostsImgs[1][G.UP][1]=loadImage("pinky-up-2.png");
+		ghostsImgs[1][G.RIGHT][0]=loadImage("pinky-right-1.png");
+		ghostsImgs[1][G.RIGHT][1]=loadImage("pinky-right-2.png");
+		ghostsImgs[1][G.DOWN][0]=loadImage("pinky-down-1.png");
+		ghostsImgs[1][G.DOWN][1]=loadImage("pinky-down-2.png");
+		ghostsImgs[1][G.LEFT][0]=loadImage("pinky-left-1.png");
+		ghostsImgs[1][G.LEFT][1]=loadImage("pinky-left-2.png");
+		
+		ghostsImgs[2][G.UP][0]=loadImage("inky-up-1.png");
+		ghostsImgs[2][G.UP][1]=loadImage("inky-up-2.png");
+		ghostsImgs[2][G.RIGHT][0]=loadImage("inky-right-1.png");
+		ghostsImgs[2][G.RIGHT][1]=loadImage("inky-right-2.png");
+		ghostsImgs[2][G.DOWN][0]=loadImage("inky-down-1.png");
+		ghostsImgs[2][G.DOWN][1]=loadImage("inky-down-2.png");
+		ghostsImgs[2][G.LEFT][0]=loadImage("inky-left-1.png");
+		ghostsImgs[2][G.LEFT][1]=loadImage("inky-left-2.png");
+		
+		ghostsImgs[3][G.UP][0]=loadImage("sue-up-1.png");
+		ghostsImgs[3][G.UP][1]=loadImage("sue-up-2.png");
+		ghostsImgs[3][G.RIGHT][0]=loadImage("sue-right-1.png");
+		ghostsImgs[3][G.RIGHT][1]=loadImage("sue-right-2.png");
+		ghostsImgs[3][G.DOWN][0]=loadImage("sue-down-1.png");
+		ghostsImgs[3][G.DOWN][1]=loadImage("sue-down-2.png");
+		ghostsImgs[3][G.LEFT][0]=loadImage("sue-left-1.png");
+		ghostsImgs[3][G.LEFT][1]=loadImage("sue-left-2.png");
+		
+		ghostsImgs[4][0][0]=loadImage("edible-ghost-1.png");
+		ghostsImgs[4][0][1]=loadImage("edible-ghost-2.png");
+		ghostsImgs[5][0][0]=loadImage("edible-ghost-blink-1.png");
+		ghostsImgs[5][0][1]=loadImage("edible-ghost-blink-2.png");
+		
+		images=loadMazeImages();
+	}
+	
+	//Composes the frame of the current time step of the game supplied (the image returned is reused for the next frame)
+	public BufferedImage render(Game game)
+	{
+		gameState.copyFrom((G)game);
+		gameState.numDebug=0;
+		
+		return render(gameState);
+	}
+	
+	//Composes the frame of the time step supplied (the image returned is reused for the next frame)
+	BufferedImage render(RenderState state)
+	{
+		this.state=state;
+		dirtyX1=dirtyY1=Integer.MAX_VALUE;
+		dirtyX2=dirtyY2=Integer.MIN_VALUE;
+		
+		if(offscreen==null)
+		{
+			offscreen=new BufferedImage(state.getWidth()*MAG,state.getHeight()*MAG+20,BufferedImage.TYPE_INT_RGB);
+			bufferGraphics=offscreen.getGraphics();
+			pillLayer=new BufferedImage(offscreen.getWidth(),offscreen.getHeight(),BufferedImage.TYPE_INT_RGB);
+			pillGraphics=pillLayer.getGraphics();
+		}
+		
+		if(updatePillLayer())
+		{
+			bufferGraphics.drawImage(pillLayer,0,0,null);
+			addDirty(0,0,offscreen.getWidth(),offscreen.getHeight());
+		}
+		else
+			for(int i=0;i<numDrawn;i+=4)
+				restore(drawn[i],drawn[i+1],drawn[i+2],drawn[i+3]);
+		
+		numDrawn=0;
+		
+		drawDebugInfo();	//this will be used during testing only and will be disabled in the competition itself
+		drawPacMan();
+		drawGhosts();
+		drawLives();
+		drawGameInfo();
+		
+		if(state.gameOver)
+			drawGameOver();
+		
+		for(int i=0;i<numDrawn;i+=4)
+			addDirty(drawn[i],drawn[i+1],drawn[i+2],drawn[i+3]);
+		
+		return offscreen;
+	}
+	
+	//Sets the intensities (in [0,1], for every maze and node) drawn on top of the mazes, e.g., a heatmap; null for none
+	public void setOverlay(double[][] overlay)
+	{
+		if(overlay==this.overlay)
+			return;
+		
+		this.overlay=overlay;
+		Arrays.fill(mazeLayers,null);
+		pillLayerMaze=-1;	//the pill layer is drawn over the maze layer
+	}
+	
+	//The static layer of the current maze: the background and the image of the maze
+	private BufferedImage getMazeLayer()
+	{
+		int maze=state.maze;
+		
+		if(mazeLayers[maze]==null)
+		{
+			mazeLayers[maze]=new BufferedImage(offscreen.getWidth(),offscreen.getHeight(),BufferedImage.TYPE_INT_RGB);
+			Graphics graphics=mazeLayers[maze].getGraphics();
+			graphics.setColor(Color.BLACK);
+			graphics.fillRect(0,0,state.getWidth()*MAG,state.getHeight()*MAG+20);
+			
+			if(images[maze]!=null)
+				graphics.drawImage(images[maze],2,6,null);
+			
+			if(overlay!=null && overlay[maze]!=null)
+				drawOverlay(graphics,overlay[maze]);
+			
+			graphics.dispose();
+		}
+		
+		return mazeLayers[maze];
+	}
+	
+	//Covers every node with a square whose opacity is the intensity of the node
+	private void drawOverlay(Graphics graphics,double[] intensities)
+	{
+		for(int i=0;i<intensities.length;i++)
+		{
+			if(intensities[i]>0)
+			{
+				graphics.setColor(new Color(255,48,0,(int)(255*Math.min(1,intensities[i]))));
+				graphics.fillRect(state.getX(i)*MAG+3,state.getY(i)*MAG+7,5,5);
+			}
+		}
+	}
+	
+	/*
+	 * Brings the pill layer up to date: pills that have been eaten since the last frame are erased (from both the pill
+	 * layer and the frame). The layer is only redrawn in full if the maze has changed or pills have re-appeared (e.g.,
+	 * when a replay goes back in time); returns true in that case.
+	 */
+	private boolean updatePillLayer()
+	{
+		if(pillLayerMaze==state.maze && layerPills==state.pills && layerPowerPills==state.powerPills)
+			return false;
+		
+		if(pillLayerMaze==state.maze && eatPills(state.getPillIndices(),state.pills,pillsShown,4,8,4)
+				&& eatPills(state.getPowerPillIndices(),state.powerPills,powerPillsShown,1,5,9))
+		{
+			layerPills=state.pills;
+			layerPowerPills=state.powerPills;
+			
+			return false;
+		}
+		
+		pillGraphics.drawImage(getMazeLayer(),0,0,null);
+		pillsShown=drawPills(state.getPillIndices(),state.pills,4,8,3);
+		powerPillsShown=drawPills(state.getPowerPillIndices(),state.powerPills,1,5,8);
+		pillLayerMaze=state.maze;
+		layerPills=state.pills;
+		layerPowerPills=state.powerPills;
+		
+		return true;
+	}
+	
+	private boolean[] drawPills(int[] indices,G.PillSet pills,int offsetX,int offsetY,int size)
+	{
+		boolean[] shown=new boolean[indices.length];
+		
+		pillGraphics.setColor(Color.white);
+		
+		for(int i=0;i<indices.length;i++)
+		{
+			if(pills.get(i))
+			{
+				pillGraphics.fillOval(state.getX(indices[i])*MAG+offsetX,state.getY(indices[i])*MAG+offsetY,size,size);
+				shown[i]=true;
+			}
+		}
+		
+		return shown;
+	}
+	
+	//Erases the pills that are shown but have been eaten; returns false if a pill that is not shown has re-appeared
+	private boolean eatPills(int[] indices,G.PillSet pills,boolean[] shown,int offsetX,int offsetY,int size)
+	{
+		for(int i=0;i<indices.length;i++)
+		{
+			boolean active=pills.get(i);
+			
+			if(active && !shown[i])
+				return false;
+			
+			if(!active && shown[i])
+			{
+				int x=state.getX(indices[i])*MAG+offsetX;
+				int y=state.getY(indices[i])*MAG+offsetY;
+				
+				pillGraphics.drawImage(getMazeLayer(),x,y,x+size,y+size,x,y,x+size,y+size,null);
+				restore(x,y,size,size);
+				shown[i]=false;
+			}
+		}
+		
+		return true;
+	}
+	
+	//Copies the region specified from the pill layer into the frame
+	private void restore(int x,int y,int width,int height)
+	{
+		bufferGraphics.drawImage(pillLayer,x,y,x+width,y+height,x,y,x+width,y+height,null);
+		addDirty(x,y,width,height);
+	}
+	
+	//Remembers a region drawn over the pill layer in this frame
+	private void addDrawn(int x,int y,int width,int height)
+	{
+		if(numDrawn==drawn.length)
+			drawn=Arrays.copyOf(drawn,drawn.length*2);
+		
+		drawn[numDrawn++]=x;
+		drawn[numDrawn++]=y;
+		drawn[numDrawn++]=width;
+		drawn[numDrawn++]=height;
+	}
+	
+	private void addDirty(int x,int y,int width,int height)
+	{
+		dirtyX1=Math.min(dirtyX1,Math.max(x,0));
+		dirtyY1=Math.min(dirtyY1,Math.max(y,0));
+		dirtyX2=Math.max(dirtyX2,Math.min(x+width,offscreen.getWidth()));
+		dirtyY2=Math.max(dirtyY2,Math.min(y+height,offscreen.getHeight()));
+	}
+	
+	private void drawPacMan()
+	{
+		int pacLoc=state.pacManLoc;
+		int pacDir=state.pacManDir;
+		
+		if(pacDir>=0 && pacDir<4)
+			pacManDir=pacDir;
+		
+		drawSprite(pacmanImgs[pacManDir][(state.totalTime%6)/2],state.getX(pacLoc)*MAG-1,state.getY(pacLoc)*MAG+3);
+	}
+
+	private void drawGhosts()
+	{
+		for(int index=0;index<G.NUM_GHOSTS;index++)
+		{
+			int loc=state.ghostLocs[index];
+			int x=state.getX(loc);
+			int y=state.getY(loc);
+			
+			if(state.edibleTimes[index]>0)
+			{
+				if(state.edibleTimes[index]<_G_.EDIBLE_ALERT && ((state.totalTime%6)/3)==0)
+					drawSprite(ghostsImgs[5][0][(state.totalTime%6)/3],x*MAG-1,y*MAG+3);
+				else
+					drawSprite(ghostsImgs[4][0][(state.totalTime%6)/3],x*MAG-1,y*MAG+3);
+			}
+			else
+			{
+				if(state.lairTimes[index]>0)
+					drawSprite(ghostsImgs[index][G.UP][(state.totalTime%6)/3],x*MAG-1+(index*5),y*MAG+3);
+				else
+					drawSprite(ghostsImgs[index][state.ghostDirs[index]][(state.totalTime%6)/3],x*MAG-1,y*MAG+3);
+			}
+		}
+	}
+	
+	private void drawSprite(BufferedImage image,int x,int y)
+	{
+		bufferGraphics.drawImage(image,x,y,null);
+		
+		if(image!=null)
+			addDrawn(x,y,image.getWidth(),image.getHeight());
+	}
+
+	//The lives and the game information are redrawn in every frame (the level time changes in every time step)
+	private void drawLives()
+	{
+		addDrawn(0,state.getHeight()*MAG-4,state.getWidth()*MAG,24);
+		
+		for(int i=0;i<state.livesRemaining-1;i++) //-1 as lives remaining includes the current life
+			bufferGraphics.drawImage(pacmanImgs[G.RIGHT][0],210-(30*i)/2,260,null);
+	}
+	
+	private void drawGameInfo()
+	{
+		bufferGraphics.setColor(Color.WHITE);
+		bufferGraphics.drawString("S: ",4,271);
+		bufferGraphics.drawString(""+state.score,16,271);
+		bufferGraphics.drawString("L: ",78,271);
+		bufferGraphics.drawString(""+(state.level+1),90,271);
+		bufferGraphics.drawString("T: ",116,271);
+		bufferGraphics.drawString(""+state.levelTime,129,271);
+	}
+	
+	private void drawGameOver()
+	{
+		bufferGraphics.setColor(Color.WHITE);
+		bufferGraphics.drawString("Game Over",80,150);
+		addDrawn(78,136,70,20);
+	}
+	
+	private void drawDebugInfo()
+	{
+		int[] data=state.debugData;
+		
+		for(int i=0;i<state.numDebug;i++)
+		{
+			int offset=i*DebugBuffer.STRIDE;
+			int x1=data[offset+1],y1=data[offset+2],x2=data[offset+3],y2=data[offset+4];
+			
+			if(debugColor==null || debugColor.getRGB()!=data[offset])
+				debugColor=new Color(data[offset],true);
+			
+			bufferGraphics.setColor(debugColor);
+			
+			if(state.debugKinds[i]==DebugBuffer.POINT)
+			{
+				bufferGraphics.fillRect(x1*MAG+1,y1*MAG+5,10,10);
+				addDrawn(x1*MAG+1,y1*MAG+5,10,10);
+			}
+			else
+			{
+				bufferGraphics.drawLine(x1*MAG+5,y1*MAG+10,x2*MAG+5,y2*MAG+10);
+				addDrawn(Math.min(x1,x2)*MAG+5,Math.min(y1,y2)*MAG+10,Math.abs(x2-x1)*MAG+1,Math.abs(y2-y1)*MAG+1);
+			}
+		}
+	}
+	
+	//Bounds of the regions changed by the last call to render(-)
+	public int getDirtyX()
+	{
+		return dirtyX1;
+	}
+	
+	public int getDirtyY()
+	{
+		return dirtyY1;
+	}
+	
+	public int getDirtyWidth()
+	{
+		return Math.max(dirtyX2-dirtyX1,0);
+	}
+	
+	public int getDirtyHeight()
+	{
+		return Math.max(dirtyY2-dirtyY1,0);
+	}
+	
+	private static BufferedImage[] loadMazeImages()
+	{
+		BufferedImage[] images=new BufferedImage[4];
+		
+		for(int i=0;i<images.length;i++)
+			images[i]=loadImage(mazes[i]);
+		
+		return images;
+	}
+	
+	private static BufferedImage loadImage(String fileName)
+	{
+		BufferedImage image=null;
+		
+		try
+		{
+			//APPLET
+//        	image=ImageIO.read(this.getClass().getResourceAsStream("/images/"+fileName));
+			//APPLICATION
+			image=ImageIO.read(new File(pathImages+System.getProperty("file.separator")+fileName));
+		}
+		catch(IOException e)
+		{
+			e.printStackTrace();
+		}
+		
+		return image;
+	}
+}
@@ -0,0 +1,31 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+/*
+ * Read-only view of a game at one time step, obtained from G.snapshot(). Exec publishes a single snapshot per
+ * time step and hands it to both controllers, so it must never change: advanceGame(-) is not available and a
+ * snapshot cannot be the target of copyInto(-). Controllers that want to simulate moves use copy() (or
+ * GamePool), which returns a private, mutable forward model as before.
+ */
+public final class GameSnapshot extends G
+{
+	GameSnapshot(){}
+	
+	//Snapshots cannot be advanced: use copy() to obtain a forward model
+	public int[] advanceGame(int pacManDir,int[] ghostDirs)
+	{
+		throw new UnsupportedOperationException("A game snapshot is read-only: use copy() to obtain a forward model");
+	}
+}
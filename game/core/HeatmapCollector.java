@@ -0,0 +1,199 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/*
+ * Counts, for every node of every maze, where things happen over many games: where Ms Pac-Man and the ghosts spend
+ * their time, where Ms Pac-Man loses her lives, where she eats the ghosts and when (in the level) she eats each power
+ * pill. The counters are kept in primitive arrays, [maze][counter][node], allocated when a maze is first seen.
+ * 
+ * A collector listens to the games it counts (see G.addListener(-)) and is not thread-safe: games played in parallel
+ * should each have their own collector, which are then added up with merge(-). The totals may be written as CSV
+ * (writeCsv(-)) or shown on top of the mazes (see GameView.setOverlay(-)).
+ */
+public final class HeatmapCollector implements GameListener
+{
+	public static final int VISITS=0;			//time steps Ms Pac-Man spent at the node
+	public static final int GHOST_VISITS=1;		//time steps the ghosts (outside the lair) spent at the node
+	public static final int DEATHS=2;			//lives lost at the node
+	public static final int GHOST_EATS=3;		//ghosts eaten at the node
+	public static final int POWER_PILLS=4;		//times the power pill at the node was eaten
+	public static final int POWER_PILL_TIME=5;	//sum of the level times at which the power pill at the node was eaten
+	public static final String[] COUNTERS={"visits","ghostVisits","deaths","ghostEats","powerPills","powerPillTime"};
+	
+	private final long[][][] counters=new long[G.NUM_MAZES][][];
+	private final long[] numSteps=new long[G.NUM_MAZES];
+	private long numGames;
+	
+	//Counts the time step just played and its events
+	public void gameAdvanced(Game game,GameEvents events)
+	{
+		int maze=game.getCurMaze();
+		long[][] mazeCounters=getCounters(maze);
+		
+		numSteps[maze]++;
+		mazeCounters[VISITS][game.getCurPacManLoc()]++;
+		
+		for(int i=0;i<G.NUM_GHOSTS;i++)
+			if(game.getLairTime(i)==0)
+				mazeCounters[GHOST_VISITS][game.getCurGhostLoc(i)]++;
+		
+		//the end of a level is the last event of a time step: the other events occurred on the previous maze
+		int numEvents=events.getNumEvents();
+		
+		if(numEvents>0 && !game.gameOver() && events.getType(numEvents-1)>=GameEvents.LEVEL_CLEARED && events.getType(numEvents-1)<=GameEvents.LEVEL_TIMED_OUT)
+			mazeCounters=getCounters((maze+G.NUM_MAZES-1)%G.NUM_MAZES);
+		
+		for(int i=0;i<numEvents;i++)
+		{
+			switch(events.getType(i))
+			{
+				case GameEvents.PACMAN_EATEN: mazeCounters[DEATHS][events.getNode(i)]++; break;
+				case GameEvents.GHOST_EATEN: mazeCounters[GHOST_EATS][events.getNode(i)]++; break;
+				case GameEvents.POWER_PILL_EATEN:
+					mazeCounters[POWER_PILLS][events.getNode(i)]++;
+					mazeCounters[POWER_PILL_TIME][events.getNode(i)]+=game.getLevelTime();
+					break;
+			}
+		}
+		
+		if(game.gameOver())
+			numGames++;
+	}
+	
+	private long[][] getCounters(int maze)
+	{
+		if(counters[maze]==null)
+			counters[maze]=new long[COUNTERS.length][G.mazes[maze].graph.length];
+		
+		return counters[maze];
+	}
+	
+	//Adds the counts of the collector supplied (e.g., filled by another thread, which must be done with it) to this one
+	public synchronized void merge(HeatmapCollector other)
+	{
+		numGames+=other.numGames;
+		
+		for(int maze=0;maze<counters.length;maze++)
+		{
+			numSteps[maze]+=other.numSteps[maze];
+			
+			if(other.counters[maze]==null)
+				continue;
+			
+			long[][] mazeCounters=getCounters(maze);
+			
+			for(int counter=0;counter<mazeCounters.length;counter++)
+				for(int node=0;node<mazeCounters[counter].length;node++)
+					mazeCounters[counter][node]+=other.counters[maze][counter][node];
+		}
+	}
+	
+	public long getNumGames()
+	{
+		return numGames;
+	}
+	
+	//Number of time steps counted on the maze specified
+	public long getNumSteps(int maze)
+	{
+		return numSteps[maze];
+	}
+	
+	//The count of the counter specified (VISITS, etc.) at the node specified
+	public long get(int maze,int counter,int node)
+	{
+		return counters[maze]==null ? 0 : counters[maze][counter][node];
+	}
+	
+	/*
+	 * The counts of the counter specified scaled to [0,1] for every maze (null for mazes not seen), relative to the
+	 * highest count of the maze. The square root is taken, as the counts are usually concentrated on few nodes.
+	 */
+	public double[][] getIntensities(int counter)
+	{
+		double[][] intensities=new double[counters.length][];
+		
+		for(int maze=0;maze<counters.length;maze++)
+		{
+			if(counters[maze]==null)
+				continue;
+			
+			long[] counts=counters[maze][counter];
+			long max=1;
+			
+			for(int node=0;node<counts.length;node++)
+				max=Math.max(max,counts[node]);
+			
+			intensities[maze]=new double[counts.length];
+			
+			for(int node=0;node<counts.length;node++)
+				intensities[maze][node]=Math.sqrt(counts[node]/(double)max);
+		}
+		
+		return intensities;
+	}
+	
+	/*
+	 * Writes one line per node (of the mazes seen) with its coordinates and counts; the last column is the average level
+	 * time at which the power pill at the node was eaten (empty if there is none).
+	 */
+	public void writeCsv(String fileName) throws IOException
+	{
+		BufferedWriter writer=new BufferedWriter(new FileWriter(fileName));
+		
+		try
+		{
+			writer.write("maze,node,x,y");
+			
+			for(int counter=0;counter<COUNTERS.length;counter++)
+				writer.write(","+COUNTERS[counter]);
+			
+			writer.write(",meanPowerPillTime");
+			writer.newLine();
+			
+			for(int maze=0;maze<counters.length;maze++)
+			{
+				if(counters[maze]==null)
+					continue;
+				
+				G.Node[] graph=G.mazes[maze].graph;
+				long[][] mazeCounters=counters[maze];
+				
+				for(int node=0;node<graph.length;node++)
+				{
+					writer.write(maze+","+node+","+graph[node].x+","+graph[node].y);
+					
+					for(int counter=0;counter<mazeCounters.length;counter++)
+						writer.write(","+mazeCounters[counter][node]);
+					
+					writer.write(",");
+					
+					if(mazeCounters[POWER_PILLS][node]>0)
+						writer.write(String.valueOf(mazeCounters[POWER_PILL_TIME][node]/(double)mazeCounters[POWER_PILLS][node]));
+					
+					writer.newLine();
+				}
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+/*
+ * What GameView needs to draw a time step of a game, copied from the game by the simulation so that the view never
+ * reads the game itself (see GameView.publish()). The pill sets are persistent (see G.PillSet) and are shared rather
+ * than copied. Instances are reused: a state is only written while no one else can read it (see TripleBuffer).
+ */
+final class RenderState
+{
+	int maze,pacManLoc,pacManDir,livesRemaining,score,level,levelTime,totalTime;
+	final int[] ghostLocs=new int[G.NUM_GHOSTS],ghostDirs=new int[G.NUM_GHOSTS];
+	final int[] edibleTimes=new int[G.NUM_GHOSTS],lairTimes=new int[G.NUM_GHOSTS];
+	G.PillSet pills,powerPills;
+	boolean gameOver;
+	
+	//debug drawing commands of the time step (see DebugBuffer)
+	final int[] debugKinds=new int[DebugBuffer.CAPACITY],debugData=new int[DebugBuffer.CAPACITY*DebugBuffer.STRIDE];
+	int numDebug;
+	
+	//Copies the current time step of the game supplied
+	void copyFrom(G game)
+	{
+		maze=game.curMaze;
+		pacManLoc=game.curPacManLoc;
+		pacManDir=game.lastPacManDir;
+		livesRemaining=game.livesRemaining;
+		score=game.score;
+		level=game.totLevel;
+		levelTime=game.levelTime;
+		totalTime=game.totalTime;
+		pills=game.pills;
+		powerPills=game.powerPills;
+		gameOver=game.gameOver;
+		
+		System.arraycopy(game.curGhostLocs,0,ghostLocs,0,G.NUM_GHOSTS);
+		System.arraycopy(game.lastGhostDirs,0,ghostDirs,0,G.NUM_GHOSTS);
+		System.arraycopy(game.edibleTimes,0,edibleTimes,0,G.NUM_GHOSTS);
+		System.arraycopy(game.lairTimes,0,lairTimes,0,G.NUM_GHOSTS);
+	}
+	
+	int getX(int nodeIndex)
+	{
+		return G.mazes[maze].graph[nodeIndex].x;
+	}
+	
+	int getY(int nodeIndex)
+	{
+		return G.mazes[maze].graph[nodeIndex].y;
+	}
+	
+	int[] getPillIndices()
+	{
+		return G.mazes[maze].pillIndices;
+	}
+	
+	int[] getPowerPillIndices()
+	{
+		return G.mazes[maze].powerPillIndices;
+	}
+	
+	int getWidth()
+	{
+		return G.mazes[maze].width;
+	}
+	
+	int getHeight()
+	{
+		return G.mazes[maze].height;
+	}
+}
@@ -2,29 +2,26 @@ package game.core;
 
 import game.controllers.GhostController;
 import game.controllers.PacManController;
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.PrintWriter;
-import java.util.ArrayList;
 
 /*
  * This class allows one to record games to replay them later. This may be done in the Exec class.
  * It simply records all the directions taken by the controllers AFTER directions were corrected and/or
  * random ghost reversals. The game must be replayed using _RG_ which does not have random reversal events
  * and allows ghosts to reverse (to mirror random ghost reversals that took place during the original
- * game play).
+ * game play). The actions are streamed from the file (see ReplayReader) as the game is played.
  */
-@SuppressWarnings({"rawtypes","unchecked"})
 public class Replay
 {
+    public static final String SUMMARY="#\tsummary";	//comment holding the outcome of the game
+
     private PacManController pacMan;
     private GhostController ghosts;
 
-    private ArrayList<Integer> pacManActions;
-    private ArrayList<int[]> ghostActions;
+    private ReplayReader reader;
+    private final int[] ghostActions=new int[G.NUM_GHOSTS];
 
     public Replay(String fileName)
     {
@@ -35,11 +32,60 @@ public class Replay
  
 	public void loadActions(String fileName)
     {
-        ArrayList[] data=loadData(fileName);
-        pacManActions=data[0];
-        ghostActions=data[1];
+		close();
+		
+		try
+		{
+			reader=ReplayReader.open(fileName);
+		}
+		catch(IOException ioe)
+		{
+			ioe.printStackTrace();
+		}
     }
-
+	
+	//Returns true if the replay contains the actions for the time step specified
+	public boolean hasActions(int time)
+	{
+		try
+		{
+			return reader!=null && reader.hasFrame(time);
+		}
+		catch(IOException ioe)
+		{
+			ioe.printStackTrace();
+			return false;
+		}
+	}
+	
+	public ReplayReader getReader()
+	{
+		return reader;
+	}
+	
+	public void close()
+	{
+		if(reader==null)
+			return;
+		
+		try
+		{
+			reader.close();
+		}
+		catch(IOException ioe)
+		{
+			ioe.printStackTrace();
+		}
+		
+		reader=null;
+	}
+
+    //Returns the outcome of the game as a comment for the text format (ignored when the actions are loaded)
+    public static String getSummary(Game game)
+    {
+    	return SUMMARY+"\t"+game.getScore()+"\t"+game.getCurLevel()+"\t"+game.getTotalTime()+"\t"+game.getLivesRemaining();
+    }
+    
     public static void saveActions(String actions,String fileName,boolean append)
     {
         try
@@ -69,51 +115,19 @@ public class Replay
         return ghosts;
     }
 
-	public ArrayList[] loadData(String fileName)
-    {
-    	ArrayList[] data=new ArrayList[2];
-        data[0]=new ArrayList<Integer>();
-        data[1]=new ArrayList<int[]>();
-
-        try
-        {
-            BufferedReader br=new BufferedReader(new InputStreamReader(new FileInputStream(System.getProperty("user.dir")+"/"+fileName)));
-            String input=br.readLine();
-
-            while(input!=null && !input.equals(""))
-            {
-                input=input.trim();
-                String[] numbers=input.split("\t");
-
-                if(!numbers[0].equals("#"))                     //ignore comments
-                {
-                    data[0].add(Integer.parseInt(numbers[1]));  //action for Ms Pac-Man
-
-                    int[] ghostActions=new int[4];              //actions for ghosts
-
-                    for(int i=0;i<ghostActions.length;i++)
-                	    ghostActions[i]=Integer.parseInt(numbers[i+2]);
-
-                    data[1].add(ghostActions);
-                }
-
-                input=br.readLine();
-            }
-        }
-        catch(IOException ioe)
-        {
-            ioe.printStackTrace();
-        }
-
-        return data;
-    }
-        
 	//Simple controller that simply plays the next recorded action
     class ReplayMsPacman implements PacManController
     {
         public int getAction(Game game,long timeDue)
         {
-            return pacManActions.get(game.getTotalTime());
+        	try
+        	{
+        		return reader.getAction(game.getTotalTime(),0);
+        	}
+        	catch(IOException ioe)
+        	{
+        		throw new RuntimeException(ioe);
+        	}
         }
     }
 
@@ -122,7 +136,16 @@ public class Replay
     {
         public int[] getActions(Game game,long timeDue)
         {
-            return ghostActions.get(game.getTotalTime());
+        	try
+        	{
+        		reader.getGhostActions(game.getTotalTime(),ghostActions);
+        	}
+        	catch(IOException ioe)
+        	{
+        		throw new RuntimeException(ioe);
+        	}
+        	
+            return ghostActions;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,601 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/*
+ * An index of replays that answers queries (filters and sorting) without opening the replays. For every replay,
+ * the controllers, seed, first maze, final score, level, time and lives, and the lives lost in every level are
+ * kept in memory column by column (primitive arrays, controllers as indices into a dictionary), so a query is a
+ * scan over a few arrays.
+ * 
+ * The index file is only ever appended to: adding a replay appends a record, and a replay added again (e.g.,
+ * because the file has changed) supersedes its earlier record when the index is loaded. Controllers are stored
+ * once (CONTROLLER records) and referred to by their index in the replay records (REPLAY). Replays are indexed
+ * from their header and trailer if they have a summary (see ReplayWriter); other replays (e.g., text replays)
+ * are played once, headless, to obtain the information.
+ */
+public final class ReplayCatalog
+{
+	public static final int MAGIC=0x4D504331;		//"MPC1"
+	
+	//records of the index file
+	private static final byte CONTROLLER=0;
+	private static final byte REPLAY=1;
+	
+	//sort keys
+	public static final int SCORE=0;
+	public static final int LEVEL=1;
+	public static final int TIME=2;
+	public static final int DEATHS=3;
+	
+	private final String indexFileName;
+	private DataOutputStream out;
+	
+	//the columns
+	private int size;
+	private String[] fileNames=new String[1<<10];
+	private long[] modified=new long[1<<10],seeds=new long[1<<10];
+	private int[] pacManIds=new int[1<<10],ghostIds=new int[1<<10];
+	private int[] scores=new int[1<<10],levels=new int[1<<10],times=new int[1<<10],lives=new int[1<<10],totalDeaths=new int[1<<10];
+	private byte[] startMazes=new byte[1<<10];
+	private byte[] deaths=new byte[(1<<10)*G.MAX_LEVELS];
+	private boolean[] superseded=new boolean[1<<10];
+	
+	private final List<String> controllers=new ArrayList<String>();
+	private final HashMap<String,Integer> controllerIds=new HashMap<String,Integer>();
+	private final HashMap<String,Integer> rows=new HashMap<String,Integer>();
+	
+	//Opens the index file specified (created if it does not exist yet) and loads it into memory
+	public ReplayCatalog(String indexFileName) throws IOException
+	{
+		this.indexFileName=indexFileName;
+		
+		File file=new File(indexFileName);
+		
+		//a record cut short (e.g., the process was killed while appending it) is removed, so that new records follow
+		//the last complete one
+		if(file.exists() && file.length()>0)
+		{
+			long complete=load(file);
+			
+			if(complete<file.length())
+			{
+				RandomAccessFile truncated=new RandomAccessFile(file,"rw");
+				
+				try
+				{
+					truncated.setLength(complete);
+				}
+				finally
+				{
+					truncated.close();
+				}
+			}
+		}
+		
+		boolean created=!file.exists() || file.length()==0;
+		this.out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFileName,true)));
+		
+		if(created)
+			out.writeInt(MAGIC);
+	}
+	
+	//Loads the records of the index file; returns the length of the complete records (a partial one at the end is ignored)
+	private long load(File file) throws IOException
+	{
+		CountingInputStream counter=new CountingInputStream(new BufferedInputStream(new FileInputStream(file),1<<16));
+		DataInputStream in=new DataInputStream(counter);
+		
+		try
+		{
+			byte[] levelDeaths=new byte[G.MAX_LEVELS];
+			long complete=0;
+			
+			try
+			{
+				if(in.readInt()!=MAGIC)
+					throw new IOException("Not a replay catalog: "+file);
+				
+				complete=counter.count;
+				
+				while(true)
+				{
+					byte record=in.readByte();
+					
+					if(record==CONTROLLER)
+						getControllerId(in.readUTF(),false);
+					else
+					{
+						String fileName=in.readUTF();
+						long lastModified=in.readLong();
+						int pacManId=in.readShort();
+						int ghostId=in.readShort();
+						long seed=in.readLong();
+						int startMaze=in.readByte();
+						int score=in.readInt();
+						int level=in.readByte();
+						int time=in.readInt();
+						int livesRemaining=in.readByte();
+						in.readFully(levelDeaths);
+						
+						append(getKey(fileName),lastModified,pacManId,ghostId,seed,startMaze,score,level,time,livesRemaining,levelDeaths);
+					}
+					
+					complete=counter.count;
+				}
+			}
+			catch(EOFException e)
+			{
+				return complete;
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
+	//Counts the bytes read, so that the end of the last complete record is known
+	private static final class CountingInputStream extends FilterInputStream
+	{
+		long count;
+		
+		CountingInputStream(InputStream in)
+		{
+			super(in);
+		}
+		
+		public int read() throws IOException
+		{
+			int b=super.read();
+			
+			if(b!=-1)
+				count++;
+			
+			return b;
+		}
+		
+		public int read(byte[] b,int offset,int length) throws IOException
+		{
+			int n=super.read(b,offset,length);
+			
+			if(n>0)
+				count+=n;
+			
+			return n;
+		}
+		
+		public long skip(long n) throws IOException
+		{
+			long skipped=super.skip(n);
+			count+=skipped;
+			
+			return skipped;
+		}
+	}
+	
+	//Adds a row to the columns
+	private int append(String fileName,long lastModified,int pacManId,int ghostId,long seed,int startMaze,int score,int level,int time,int livesRemaining,byte[] levelDeaths)
+	{
+		if(size==fileNames.length)
+			grow();
+		
+		Integer previous=rows.put(fileName,size);
+		
+		if(previous!=null)
+			superseded[previous]=true;
+		
+		fileNames[size]=fileName;
+		modified[size]=lastModified;
+		pacManIds[size]=pacManId;
+		ghostIds[size]=ghostId;
+		seeds[size]=seed;
+		startMazes[size]=(byte)startMaze;
+		scores[size]=score;
+		levels[size]=level;
+		times[size]=time;
+		lives[size]=livesRemaining;
+		
+		int total=0;
+		
+		for(int i=0;i<G.MAX_LEVELS;i++)
+		{
+			deaths[size*G.MAX_LEVELS+i]=levelDeaths[i];
+			total+=levelDeaths[i];
+		}
+		
+		totalDeaths[size]=total;
+		
+		return size++;
+	}
+	
+	private void grow()
+	{
+		int capacity=fileNames.length*2;
+		
+		fileNames=Arrays.copyOf(fileNames,capacity);
+		modified=Arrays.copyOf(modified,capacity);
+		seeds=Arrays.copyOf(seeds,capacity);
+		pacManIds=Arrays.copyOf(pacManIds,capacity);
+		ghostIds=Arrays.copyOf(ghostIds,capacity);
+		scores=Arrays.copyOf(scores,capacity);
+		levels=Arrays.copyOf(levels,capacity);
+		times=Arrays.copyOf(times,capacity);
+		lives=Arrays.copyOf(lives,capacity);
+		totalDeaths=Arrays.copyOf(totalDeaths,capacity);
+		startMazes=Arrays.copyOf(startMazes,capacity);
+		deaths=Arrays.copyOf(deaths,capacity*G.MAX_LEVELS);
+		superseded=Arrays.copyOf(superseded,capacity);
+	}
+	
+	//Returns the index of the controller in the dictionary, adding it (and writing it to the index file if required) if new
+	private int getControllerId(String name,boolean write) throws IOException
+	{
+		Integer id=controllerIds.get(name);
+		
+		if(id==null)
+		{
+			id=controllers.size();
+			controllers.add(name);
+			controllerIds.put(name,id);
+			
+			if(write)
+			{
+				out.writeByte(CONTROLLER);
+				out.writeUTF(name);
+			}
+		}
+		
+		return id;
+	}
+	
+	/*
+	 * Indexes the replay specified (again, if it has been indexed before) and appends it to the index file
+	 */
+	public void add(String fileName) throws IOException
+	{
+		File file=new File(fileName);
+		ReplayPlayer player=new ReplayPlayer(fileName);
+		
+		try
+		{
+			ReplayReader reader=player.getReader();
+			byte[] levelDeaths=new byte[G.MAX_LEVELS];
+			int score,level,time,livesRemaining;
+			
+			if(reader.hasSummary() && reader.hasDeaths())
+			{
+				score=reader.getFinalScore();
+				level=reader.getFinalLevel();
+				time=reader.getFinalTime();
+				livesRemaining=reader.getFinalLivesRemaining();
+				
+				for(int i=0;i<levelDeaths.length;i++)
+					levelDeaths[i]=(byte)reader.getDeaths(i);
+			}
+			else
+			{
+				_RG_ game=player.getGame();
+				int lastLives=game.getLivesRemaining();
+				
+				try
+				{
+					while(player.stepForward())
+					{
+						if(game.getLivesRemaining()<lastLives && game.getCurLevel()<levelDeaths.length)
+							levelDeaths[game.getCurLevel()]++;
+						
+						lastLives=game.getLivesRemaining();
+					}
+				}
+				catch(RuntimeException e)	//the recorded actions are not valid (see ReplayVerifier)
+				{
+					throw new IOException("Cannot play "+fileName+" at time "+game.getTotalTime(),e);
+				}
+				
+				score=game.getScore();
+				level=game.getCurLevel();
+				time=game.getTotalTime();
+				livesRemaining=game.getLivesRemaining();
+			}
+			
+			add(fileName,file.lastModified(),reader.getPacManName(),reader.getGhostName(),reader.getSeed(),reader.getMaze(),score,level,time,livesRemaining,levelDeaths);
+		}
+		finally
+		{
+			player.close();
+		}
+	}
+	
+	//Adds a replay whose information is known already. Replays are keyed by their absolute, normalised path (see
+	//getKey(-), as in scan(-)), so that the same replay is not indexed twice under different names
+	public synchronized void add(String fileName,long lastModified,String pacManName,String ghostName,long seed,int startMaze,int score,int level,int time,int livesRemaining,byte[] levelDeaths) throws IOException
+	{
+		fileName=getKey(fileName);
+		int pacManId=getControllerId(pacManName,true);
+		int ghostId=getControllerId(ghostName,true);
+		
+		append(fileName,lastModified,pacManId,ghostId,seed,startMaze,score,level,time,livesRemaining,levelDeaths);
+		
+		out.writeByte(REPLAY);
+		out.writeUTF(fileName);
+		out.writeLong(lastModified);
+		out.writeShort(pacManId);
+		out.writeShort(ghostId);
+		out.writeLong(seed);
+		out.writeByte(startMaze);
+		out.writeInt(score);
+		out.writeByte(level);
+		out.writeInt(time);
+		out.writeByte(livesRemaining);
+		out.write(levelDeaths);
+		out.flush();
+	}
+	
+	/*
+	 * Indexes all replays in the directory specified that are not in the catalog yet or have changed since they
+	 * were indexed; returns the number of replays indexed. Replays that cannot be read or played are reported and skipped.
+	 */
+	public int scan(String directory)
+	{
+		File[] files=new File(directory).listFiles();
+		int indexed=0;
+		
+		if(files==null)
+			return 0;
+		
+		Arrays.sort(files);
+		
+		for(File file : files)
+		{
+			if(!file.isFile() || !(ReplayWriter.isBinary(file.getName()) || file.getName().endsWith(".txt")))
+				continue;
+			
+			String key=getKey(file.getPath());
+			Integer row=rows.get(key);
+			
+			if(row==null || modified[row]!=file.lastModified())
+			{
+				try
+				{
+					add(key);
+					indexed++;
+				}
+				catch(IOException e)
+				{
+					System.out.println("Could not index "+file.getPath()+": "+e.getMessage());
+				}
+			}
+		}
+		
+		return indexed;
+	}
+	
+	//The key of a replay: its absolute path without "." and ".." (e.g., "./replays/a.mpr", "replays/a.mpr" and the
+	//absolute path are the same replay)
+	static String getKey(String fileName)
+	{
+		return new File(fileName).toPath().toAbsolutePath().normalize().toString();
+	}
+	
+	public void close() throws IOException
+	{
+		out.close();
+	}
+	
+	public String getIndexFileName()
+	{
+		return indexFileName;
+	}
+	
+	//Number of rows (including rows superseded by later ones, which queries skip)
+	public int getNumRows()
+	{
+		return size;
+	}
+	
+	public String getFileName(int row)
+	{
+		return fileNames[row];
+	}
+	
+	public String getPacManName(int row)
+	{
+		return controllers.get(pacManIds[row]);
+	}
+	
+	public String getGhostName(int row)
+	{
+		return controllers.get(ghostIds[row]);
+	}
+	
+	public long getSeed(int row)
+	{
+		return seeds[row];
+	}
+	
+	public int getScore(int row)
+	{
+		return scores[row];
+	}
+	
+	//Level the game ended in
+	public int getLevel(int row)
+	{
+		return levels[row];
+	}
+	
+	//Maze the game ended in
+	public int getMaze(int row)
+	{
+		return (startMazes[row]+levels[row])%G.NUM_MAZES;
+	}
+	
+	public int getTime(int row)
+	{
+		return times[row];
+	}
+	
+	public int getLivesRemaining(int row)
+	{
+		return lives[row];
+	}
+	
+	public int getDeaths(int row,int level)
+	{
+		return deaths[row*G.MAX_LEVELS+level];
+	}
+	
+	public int getTotalDeaths(int row)
+	{
+		return totalDeaths[row];
+	}
+	
+	public String toString(int row)
+	{
+		return fileNames[row]+"\t"+getPacManName(row)+"\t"+getGhostName(row)+"\t"+scores[row]+"\t"+(levels[row]+1)+"\t"+times[row]+"\t"+totalDeaths[row];
+	}
+	
+	public Query query()
+	{
+		return new Query();
+	}
+	
+	/*
+	 * A query over the catalog: filters are combined (all must hold), the result may be sorted and limited. For
+	 * instance, all games in which MyGhosts beat Ms Pac-Man on the third maze before level 3, highest score first:
+	 * 
+	 *   catalog.query().ghosts("MyGhosts").maze(2).maxLevel(1).pacManLost().sortBy(ReplayCatalog.SCORE,false).run();
+	 */
+	public final class Query
+	{
+		private String pacMan,ghosts;
+		private int minScore=Integer.MIN_VALUE,maxScore=Integer.MAX_VALUE,minLevel=0,maxLevel=Integer.MAX_VALUE;
+		private int maxTime=Integer.MAX_VALUE,maze=-1,deathsLevel=-1,minDeaths;
+		private boolean pacManLost;
+		private int sortKey=-1,limit=Integer.MAX_VALUE;
+		private boolean ascending;
+		
+		private Query(){}
+		
+		//Ms Pac-Man controllers whose (class) name contains the string supplied
+		public Query pacMan(String name){pacMan=name; return this;}
+		
+		//ghost controllers whose (class) name contains the string supplied
+		public Query ghosts(String name){ghosts=name; return this;}
+		
+		public Query minScore(int score){minScore=score; return this;}
+		public Query maxScore(int score){maxScore=score; return this;}
+		
+		//levels are counted from 0, as in Game.getCurLevel()
+		public Query minLevel(int level){minLevel=level; return this;}
+		public Query maxLevel(int level){maxLevel=level; return this;}
+		
+		public Query maxTime(int time){maxTime=time; return this;}
+		
+		//maze the game ended in
+		public Query maze(int maze){this.maze=maze; return this;}
+		
+		//Ms Pac-Man lost all her lives (rather than completing the last level)
+		public Query pacManLost(){pacManLost=true; return this;}
+		
+		//at least the number of lives specified were lost in the level given
+		public Query minDeaths(int level,int deaths){deathsLevel=level; minDeaths=deaths; return this;}
+		
+		public Query sortBy(int key,boolean ascending){sortKey=key; this.ascending=ascending; return this;}
+		
+		public Query limit(int limit){this.limit=limit; return this;}
+		
+		//Returns the rows that satisfy the query
+		public int[] run()
+		{
+			synchronized(ReplayCatalog.this)
+			{
+				boolean[] pacMen=matchControllers(pacMan),ghostTeams=matchControllers(ghosts);
+				int[] result=new int[size];
+				int count=0;
+				
+				for(int row=0;row<size;row++)
+				{
+					if(superseded[row] || (pacMen!=null && !pacMen[pacManIds[row]]) || (ghostTeams!=null && !ghostTeams[ghostIds[row]]))
+						continue;
+					
+					if(scores[row]<minScore || scores[row]>maxScore || levels[row]<minLevel || levels[row]>maxLevel || times[row]>maxTime)
+						continue;
+					
+					if((maze>=0 && getMaze(row)!=maze) || (pacManLost && lives[row]>0))
+						continue;
+					
+					if(deathsLevel>=0 && deaths[row*G.MAX_LEVELS+deathsLevel]<minDeaths)
+						continue;
+					
+					result[count++]=row;
+				}
+				
+				if(sortKey>=0)
+					sort(result,count);
+				
+				return Arrays.copyOf(result,Math.min(count,limit));
+			}
+		}
+		
+		private boolean[] matchControllers(String name)
+		{
+			if(name==null)
+				return null;
+			
+			boolean[] matches=new boolean[controllers.size()];
+			
+			for(int i=0;i<matches.length;i++)
+				matches[i]=controllers.get(i).contains(name);
+			
+			return matches;
+		}
+		
+		//Sorts the rows by packing the key and the row into a long each (stable, as rows are in increasing order)
+		private void sort(int[] result,int count)
+		{
+			int[] keys=sortKey==SCORE ? scores : sortKey==LEVEL ? levels : sortKey==TIME ? times : totalDeaths;
+			long[] packed=new long[count];
+			
+			for(int i=0;i<count;i++)
+			{
+				long key=ascending ? keys[result[i]] : -(long)keys[result[i]];
+				packed[i]=(key<<32)|result[i];
+			}
+			
+			Arrays.sort(packed);
+			
+			for(int i=0;i<count;i++)
+				result[i]=(int)packed[i];
+		}
+	}
+}
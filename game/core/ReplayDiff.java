@@ -0,0 +1,152 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+import java.io.IOException;
+
+/*
+ * Finds the first time step at which two replays differ. If both replays store chained state hashes (see
+ * ReplayWriter), the hashes are compared by binary search: as every hash depends on all states before it,
+ * the hashes of two replays differ from the first divergent time step onwards. Only the interval between the
+ * last equal hash and the first different one is then played, with both replays in lockstep (seeking to its
+ * start using the keyframes). Replays without hashes (e.g., text replays) are played in lockstep from the start.
+ */
+public final class ReplayDiff
+{
+	public final int time;				//first time step at which the replays differ, -1 if they do not
+	public final String description;
+	
+	private ReplayDiff(int time,String description)
+	{
+		this.time=time;
+		this.description=description;
+	}
+	
+	public static ReplayDiff diff(String fileName1,String fileName2) throws IOException
+	{
+		ReplayPlayer player1=new ReplayPlayer(fileName1);
+		ReplayPlayer player2=new ReplayPlayer(fileName2);
+		
+		try
+		{
+			ReplayReader reader1=player1.getReader(),reader2=player2.getReader();
+			int from=0,to=Integer.MAX_VALUE;
+			int interval=reader1.getHashInterval();
+			
+			if(interval>0 && interval==reader2.getHashInterval())
+			{
+				int numHashes=Math.min(reader1.getNumHashes(),reader2.getNumHashes());
+				int low=0,high=numHashes;		//find the first hash that differs (numHashes if there is none)
+				
+				while(low<high)
+				{
+					int mid=(low+high)>>>1;
+					
+					if(reader1.getHash(mid)==reader2.getHash(mid))
+						low=mid+1;
+					else
+						high=mid;
+				}
+				
+				from=low*interval;
+				
+				if(low<numHashes)
+					to=from+interval;
+			}
+			
+			player1.seek(from);
+			player2.seek(from);
+			
+			return lockstep(player1,player2,to);
+		}
+		finally
+		{
+			player1.close();
+			player2.close();
+		}
+	}
+	
+	//Plays both replays until their states or actions differ, one of them ends or the time specified is reached
+	private static ReplayDiff lockstep(ReplayPlayer player1,ReplayPlayer player2,int to) throws IOException
+	{
+		ReplayReader reader1=player1.getReader(),reader2=player2.getReader();
+		_RG_ game1=player1.getGame(),game2=player2.getGame();
+		
+		if(game1.getTotalTime()!=game2.getTotalTime())
+			return new ReplayDiff(Math.min(game1.getTotalTime(),game2.getTotalTime()),"one replay ends before the other"+describe(player1,player2));
+		
+		while(game1.getTotalTime()<to)
+		{
+			int time=game1.getTotalTime();
+			
+			if(game1.hashState()!=game2.hashState())
+				return new ReplayDiff(time,"the states differ"+describe(player1,player2));
+			
+			boolean next1=player1.hasNext(),next2=player2.hasNext();
+			
+			if(!next1 || !next2)
+				return next1==next2 ? new ReplayDiff(-1,"the replays are identical") : new ReplayDiff(time,"one replay ends before the other"+describe(player1,player2));
+			
+			for(int i=0;i<=G.NUM_GHOSTS;i++)
+				if(reader1.getAction(time,i)!=reader2.getAction(time,i))
+					return new ReplayDiff(time,"the actions differ"+describe(player1,player2));
+			
+			player1.stepForward();
+			player2.stepForward();
+		}
+		
+		//the recorded hashes differ, yet replaying the same actions leads to the same states
+		return new ReplayDiff(to,"the recorded states differ between "+(to-player1.getReader().getHashInterval())+" and "+to
+				+" although the actions are the same: the games were played by different versions of the engine"+describe(player1,player2));
+	}
+	
+	private static String describe(ReplayPlayer player1,ReplayPlayer player2) throws IOException
+	{
+		return "\n\t1: "+describe(player1)+"\n\t2: "+describe(player2);
+	}
+	
+	//The state of the game and the actions that are taken next
+	private static String describe(ReplayPlayer player) throws IOException
+	{
+		_RG_ game=player.getGame();
+		int time=game.getTotalTime();
+		StringBuilder sb=new StringBuilder();
+		
+		sb.append("time "+time+", level "+(game.getCurLevel()+1)+", level time "+game.getLevelTime()+", score "+game.getScore()
+				+", lives "+game.getLivesRemaining()+", pills "+game.getNumActivePills()+"/"+game.getNumActivePowerPills());
+		sb.append(", Ms Pac-Man "+game.getCurPacManLoc()+"/"+game.getCurPacManDir());
+		
+		for(int i=0;i<G.NUM_GHOSTS;i++)
+			sb.append(", ghost "+(i+1)+" "+game.getCurGhostLoc(i)+"/"+game.getCurGhostDir(i)+" (edible "+game.getEdibleTime(i)+", lair "+game.getLairTime(i)+")");
+		
+		if(player.hasNext())
+		{
+			sb.append(", actions [");
+			
+			for(int i=0;i<=G.NUM_GHOSTS;i++)
+				sb.append((i>0 ? "," : "")+player.getReader().getAction(time,i));
+			
+			sb.append("]");
+		}
+		else
+			sb.append(", no more actions");
+		
+		return sb.toString();
+	}
+	
+	public String toString()
+	{
+		return time<0 ? description : "first difference at time "+time+": "+description;
+	}
+}
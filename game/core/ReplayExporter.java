@@ -0,0 +1,272 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+
+/*
+ * Exports replays as images without a display (see GameRenderer): either every step-th frame as a PNG file or all of
+ * them in a single image (a sprite sheet). A replay is split into segments at its keyframes, and the segments (of all
+ * the replays exported) are rendered in parallel: each task seeks its own ReplayPlayer to the start of its segment and
+ * draws with its own GameRenderer. Frames are taken at the time steps start+i*step, where start is the first time
+ * step of the replay, up to and including the state in which the replay ends.
+ */
+public final class ReplayExporter
+{
+	public static final String FRAME_PREFIX="frame-";
+	
+	private final int numThreads;
+	
+	public ReplayExporter(int numThreads)
+	{
+		this.numThreads=numThreads;
+	}
+	
+	/*
+	 * Receives the frames rendered; called by several threads at once
+	 */
+	private interface FrameSink
+	{
+		public void write(int index,int time,BufferedImage frame) throws IOException;
+	}
+	
+	//Exports the frames of all replays in the directory specified, each into a sub-directory of the output directory
+	//named after the replay; returns the number of frames written
+	public int exportDirectory(String directory,String outputDirectory,int step) throws IOException,InterruptedException
+	{
+		return exportFrames(ReplayVerifier.listReplays(directory),outputDirectory,step);
+	}
+	
+	//Exports the frames of the replays specified, each into a sub-directory of the output directory named after the replay
+	public int exportFrames(List<String> fileNames,String outputDirectory,int step) throws IOException,InterruptedException
+	{
+		ExecutorService executor=Executors.newFixedThreadPool(numThreads);
+		List<Future<Integer>> futures=new ArrayList<Future<Integer>>();
+		
+		try
+		{
+			for(String fileName : fileNames)
+			{
+				String name=new File(fileName).getName();
+				final File directory=new File(outputDirectory,name.substring(0,name.lastIndexOf('.')>0 ? name.lastIndexOf('.') : name.length()));
+				
+				if(!directory.isDirectory() && !directory.mkdirs())
+					throw new IOException("Cannot create "+directory);
+				
+				submit(executor,futures,fileName,step,new FrameSink()
+				{
+					public void write(int index,int time,BufferedImage frame) throws IOException
+					{
+						ImageIO.write(frame,"png",new File(directory,FRAME_PREFIX+String.format("%06d",time)+".png"));
+					}
+				});
+			}
+			
+			return sum(futures);
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+	
+	/*
+	 * Draws the frames of a replay into a single image with the number of columns specified (frames in order, left to
+	 * right and top to bottom) and writes it as a PNG file; returns the number of frames. The image holds all frames at
+	 * once, so the step should be chosen accordingly for long games.
+	 */
+	public int exportSheet(String fileName,String imageFileName,int step,int columns) throws IOException,InterruptedException
+	{
+		int start,end;
+		ReplayReader reader=ReplayReader.open(fileName);
+		
+		try
+		{
+			start=reader.getStartTime();
+			end=getEnd(reader);
+		}
+		finally
+		{
+			reader.close();
+		}
+		
+		final int numFrames=(end-start)/step+1;
+		final int numColumns=columns;
+		final BufferedImage[] sheet=new BufferedImage[1];	//created with the first frame, which tells the size of a cell
+		
+		ExecutorService executor=Executors.newFixedThreadPool(numThreads);
+		List<Future<Integer>> futures=new ArrayList<Future<Integer>>();
+		
+		try
+		{
+			submit(executor,futures,fileName,step,new FrameSink()
+			{
+				public void write(int index,int time,BufferedImage frame)
+				{
+					synchronized(sheet)
+					{
+						int width=frame.getWidth(),height=frame.getHeight();
+						
+						if(sheet[0]==null)
+							sheet[0]=new BufferedImage(numColumns*width,((numFrames+numColumns-1)/numColumns)*height,BufferedImage.TYPE_INT_RGB);
+						
+						Graphics graphics=sheet[0].getGraphics();
+						graphics.drawImage(frame,(index%numColumns)*width,(index/numColumns)*height,null);
+						graphics.dispose();
+					}
+				}
+			});
+			
+			sum(futures);
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		
+		ImageIO.write(sheet[0],"png",new File(imageFileName));
+		
+		return numFrames;
+	}
+	
+	//Submits a task for every segment of the replay (from one keyframe to the next, the last one up to the end)
+	private static void submit(ExecutorService executor,List<Future<Integer>> futures,final String fileName,final int step,final FrameSink sink) throws IOException
+	{
+		List<Integer> starts=new ArrayList<Integer>();
+		ReplayReader reader=ReplayReader.open(fileName);
+		
+		try
+		{
+			starts.add(reader.getStartTime());
+			
+			for(int i=0;i<reader.getNumKeyframes();i++)
+				if(reader.getKeyframeTime(i)>starts.get(starts.size()-1))
+					starts.add(reader.getKeyframeTime(i));
+		}
+		finally
+		{
+			reader.close();
+		}
+		
+		final int first=starts.get(0);
+		
+		for(int i=0;i<starts.size();i++)
+		{
+			final int from=starts.get(i);
+			final int to=i+1<starts.size() ? starts.get(i+1) : Integer.MAX_VALUE;
+			
+			futures.add(executor.submit(new Callable<Integer>()
+			{
+				public Integer call() throws IOException
+				{
+					return exportSegment(fileName,first,from,to,step,sink);
+				}
+			}));
+		}
+	}
+	
+	//Renders the frames at the time steps first+i*step in [from,to) and returns their number
+	private static int exportSegment(String fileName,int first,int from,int to,int step,FrameSink sink) throws IOException
+	{
+		int time=from+(step-(from-first)%step)%step;	//the first frame in the segment
+		
+		if(time>=to)
+			return 0;
+		
+		ReplayPlayer player=new ReplayPlayer(fileName);
+		GameRenderer renderer=new GameRenderer();
+		RenderState state=new RenderState();
+		int count=0;
+		
+		try
+		{
+			player.seek(time);
+			
+			while(player.getTime()==time)
+			{
+				state.copyFrom(player.getGame());
+				sink.write((time-first)/step,time,renderer.render(state));
+				count++;
+				time+=step;
+				
+				if(time>=to)
+					break;
+				
+				while(player.getTime()<time && player.stepForward());
+			}
+		}
+		finally
+		{
+			player.close();
+		}
+		
+		return count;
+	}
+	
+	//The time step in which the replay ends (the first one without actions)
+	private static int getEnd(ReplayReader reader) throws IOException
+	{
+		int low=reader.getStartTime(),high=low+1;
+		
+		while(reader.hasFrame(high))
+		{
+			low=high;
+			high=low+(high-reader.getStartTime())*2;
+		}
+		
+		//the first time step without actions is in (low,high]
+		while(high-low>1)
+		{
+			int mid=(low+high)>>>1;
+			
+			if(reader.hasFrame(mid))
+				low=mid;
+			else
+				high=mid;
+		}
+		
+		return reader.hasFrame(low) ? high : low;
+	}
+	
+	private static int sum(List<Future<Integer>> futures) throws IOException,InterruptedException
+	{
+		int sum=0;
+		
+		try
+		{
+			for(Future<Integer> future : futures)
+				sum+=future.get();
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof IOException)
+				throw (IOException)e.getCause();
+			
+			throw new IOException(e.getCause());
+		}
+		
+		return sum;
+	}
+}
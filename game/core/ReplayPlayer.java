@@ -0,0 +1,117 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+import java.io.IOException;
+
+/*
+ * Plays a replay with random access. The game is always the same instance of _RG_ (so it may be displayed
+ * by a GameView), and seeking to a time step restores the closest keyframe at or before it (or starts a new
+ * game if the replay has none) and then advances the game, without any delays, using the recorded actions.
+ * A replay may also be left at any time step to continue the game with other controllers (see branch()).
+ * Partial replays (see ReplayReader.isPartial()) start from their first keyframe.
+ */
+public final class ReplayPlayer
+{
+	private final ReplayReader reader;
+	private final _RG_ game;
+	private final int[] ghostActions=new int[G.NUM_GHOSTS];
+	
+	public ReplayPlayer(String fileName) throws IOException
+	{
+		this.reader=ReplayReader.open(fileName);
+		this.game=new _RG_();
+		game.newGame();
+		
+		if(reader.isPartial())
+			reader.loadKeyframe(0,game);
+	}
+	
+	public _RG_ getGame()
+	{
+		return game;
+	}
+	
+	public ReplayReader getReader()
+	{
+		return reader;
+	}
+	
+	//Current time step of the game
+	public int getTime()
+	{
+		return game.getTotalTime();
+	}
+	
+	//Returns true if the game can be advanced further
+	public boolean hasNext() throws IOException
+	{
+		return !game.gameOver() && reader.hasFrame(game.getTotalTime());
+	}
+	
+	//Advances the game by one time step; returns false if the end of the replay has been reached
+	public boolean stepForward() throws IOException
+	{
+		if(!hasNext())
+			return false;
+		
+		int time=game.getTotalTime();
+		reader.getGhostActions(time,ghostActions);
+		game.advanceGame(reader.getAction(time,0),ghostActions);
+		
+		return true;
+	}
+	
+	//Goes back by one time step
+	public void stepBack() throws IOException
+	{
+		seek(getTime()-1);
+	}
+	
+	//Moves the game to the time step specified (or to the end of the replay if it is shorter)
+	public void seek(int time) throws IOException
+	{
+		if(time<reader.getStartTime())
+			time=reader.getStartTime();
+		
+		int keyframe=reader.findKeyframe(time);
+		int current=game.getTotalTime();
+		
+		//going back, or skipping ahead past a keyframe: restore the closest one rather than playing every step
+		if(time<current || (keyframe>=0 && reader.getKeyframeTime(keyframe)>current))
+		{
+			if(keyframe>=0)
+				reader.loadKeyframe(keyframe,game);
+			else
+				game.newGame();
+		}
+		
+		while(game.getTotalTime()<time && stepForward());
+	}
+	
+	//Returns a normal game (random reversals, directions checked) in the current state of the replay, which may be
+	//played on with any controllers; the replay itself is not affected
+	public _G_ branch()
+	{
+		_G_ branch=new _G_();
+		game.copyInto(branch);
+		
+		return branch;
+	}
+	
+	public void close() throws IOException
+	{
+		reader.close();
+	}
+}
@@ -0,0 +1,453 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/*
+ * Streams the actions stored in a replay without loading the replay into memory. Binary replays (see
+ * ReplayWriter) are memory-mapped and any frame can be read directly; text replays (see Replay.saveActions(-))
+ * are parsed line by line as the game progresses. Either way the memory required is independent of the length
+ * of the replay and nothing is boxed.
+ */
+public abstract class ReplayReader
+{
+	protected long seed;
+	protected int maze;
+	protected String pacManName="",ghostName="";
+	protected int[] keyframeTimes=new int[0];
+	protected int[] summary;		//score, level, time and lives remaining at the end of the game
+	protected int[] deaths;			//lives lost in each level
+	protected long[] hashes=new long[0];
+	protected int hashInterval;
+	protected int startTime;		//time step of the first frame (see ReplayWriter.START)
+	protected boolean partial;		//whether the replay only holds part of a game
+	
+	//Opens the replay specified; relative file names are resolved against the working directory
+	public static ReplayReader open(String fileName) throws IOException
+	{
+		File file=new File(fileName);
+		
+		if(!file.isAbsolute())
+			file=new File(System.getProperty("user.dir"),fileName);
+		
+		if(ReplayWriter.isBinary(fileName))
+			return new BinaryReader(file);
+		else
+			return new TextReader(file);
+	}
+	
+	//Returns the action taken by an agent (0 for Ms Pac-Man, 1-4 for the ghosts) in the time step specified, -1 if not recorded
+	public abstract int getAction(int time,int agent) throws IOException;
+	
+	//Whether the replay contains the actions for the time step specified
+	public abstract boolean hasFrame(int time) throws IOException;
+	
+	public abstract void close() throws IOException;
+	
+	//Copies the actions of the ghosts in the time step specified into the array supplied
+	public void getGhostActions(int time,int[] ghostActions) throws IOException
+	{
+		for(int i=0;i<ghostActions.length;i++)
+			ghostActions[i]=getAction(time,i+1);
+	}
+	
+	//Time step of the first frame (0 unless the replay is partial)
+	public int getStartTime()
+	{
+		return startTime;
+	}
+	
+	//Whether the replay only holds part of a game (see FlightRecorder): it starts from its first keyframe and need not
+	//end with the game
+	public boolean isPartial()
+	{
+		return partial;
+	}
+	
+	//Seed of the game recorded (0 if unknown)
+	public long getSeed()
+	{
+		return seed;
+	}
+	
+	//Maze the game started in
+	public int getMaze()
+	{
+		return maze;
+	}
+	
+	public String getPacManName()
+	{
+		return pacManName;
+	}
+	
+	public String getGhostName()
+	{
+		return ghostName;
+	}
+	
+	//Whether the outcome of the game was recorded; for text replays, this is only known once the end of the replay has been read
+	public boolean hasSummary()
+	{
+		return summary!=null;
+	}
+	
+	public int getFinalScore()
+	{
+		return summary[0];
+	}
+	
+	public int getFinalLevel()
+	{
+		return summary[1];
+	}
+	
+	public int getFinalTime()
+	{
+		return summary[2];
+	}
+	
+	public int getFinalLivesRemaining()
+	{
+		return summary[3];
+	}
+	
+	//Number of lives lost in the level specified, if recorded (see hasDeaths())
+	public int getDeaths(int level)
+	{
+		return level<deaths.length ? deaths[level] : 0;
+	}
+	
+	public boolean hasDeaths()
+	{
+		return deaths!=null;
+	}
+	
+	//Number of time steps between the chained hashes of the state (see ReplayWriter), 0 if there are none
+	public int getHashInterval()
+	{
+		return hashInterval;
+	}
+	
+	public int getNumHashes()
+	{
+		return hashes.length;
+	}
+	
+	//Chained hash of the states of all time steps up to time (index+1)*getHashInterval()
+	public long getHash(int index)
+	{
+		return hashes[index];
+	}
+	
+	//Number of keyframes stored in the replay (see ReplayWriter)
+	public int getNumKeyframes()
+	{
+		return keyframeTimes.length;
+	}
+	
+	//Time step at which the keyframe specified was taken
+	public int getKeyframeTime(int index)
+	{
+		return keyframeTimes[index];
+	}
+	
+	//Returns the index of the last keyframe taken at or before the time step specified, -1 if there is none
+	public int findKeyframe(int time)
+	{
+		int low=0,high=keyframeTimes.length-1,index=-1;
+		
+		while(low<=high)
+		{
+			int mid=(low+high)>>>1;
+			
+			if(keyframeTimes[mid]<=time)
+			{
+				index=mid;
+				low=mid+1;
+			}
+			else
+				high=mid-1;
+		}
+		
+		return index;
+	}
+	
+	//Restores the state recorded in the keyframe specified into the game supplied
+	void loadKeyframe(int index,G game)
+	{
+		throw new IndexOutOfBoundsException("No keyframe "+index);
+	}
+	
+	/*
+	 * Reads the binary format from a memory-mapped file
+	 */
+	private static final class BinaryReader extends ReplayReader
+	{
+		private static final Charset UTF8=Charset.forName("UTF-8");
+		
+		private final RandomAccessFile file;
+		private final MappedByteBuffer buffer;
+		private final int framesOffset,numFrames;
+		private int[] keyframeOffsets=new int[0];
+		
+		private BinaryReader(File fileName) throws IOException
+		{
+			this.file=new RandomAccessFile(fileName,"r");
+			
+			try
+			{
+				this.buffer=file.getChannel().map(FileChannel.MapMode.READ_ONLY,0,file.length());
+				
+				if(buffer.remaining()<ReplayWriter.TRAILER_OFFSET || buffer.getInt()!=ReplayWriter.MAGIC)
+					throw new IOException("Not a replay: "+fileName);
+				
+				buffer.getShort();							//version
+				int numFrames=buffer.getInt();				//-1 if the recording was not completed
+				long trailerOffset=buffer.getLong();
+				this.seed=buffer.getLong();
+				this.maze=buffer.get();
+				this.pacManName=getString(buffer);
+				this.ghostName=getString(buffer);
+				this.framesOffset=buffer.position();
+				
+				if(numFrames<0)
+					numFrames=(int)((trailerOffset>0 ? trailerOffset : buffer.limit())-framesOffset)/ReplayWriter.FRAME_SIZE;
+				
+				this.numFrames=numFrames;
+				
+				if(trailerOffset>0)
+					loadTrailer((int)trailerOffset);
+			}
+			catch(IOException e)
+			{
+				file.close();
+				throw e;
+			}
+		}
+		
+		//Reads the sections of the trailer that are known and skips the others
+		private void loadTrailer(int offset)
+		{
+			ByteBuffer trailer=buffer.duplicate();
+			trailer.position(offset);
+			
+			for(byte tag=trailer.get();tag!=ReplayWriter.END;tag=trailer.get())
+			{
+				int length=trailer.getInt();
+				int next=trailer.position()+length;
+				
+				if(tag==ReplayWriter.KEYFRAMES)
+				{
+					keyframeTimes=new int[trailer.getInt()];
+					keyframeOffsets=new int[keyframeTimes.length];
+					
+					for(int i=0;i<keyframeTimes.length;i++)
+					{
+						keyframeTimes[i]=trailer.getInt();
+						int size=trailer.getShort();
+						keyframeOffsets[i]=trailer.position();
+						trailer.position(trailer.position()+size);
+					}
+				}
+				
+				else if(tag==ReplayWriter.HASHES)
+				{
+					hashInterval=trailer.getInt();
+					hashes=new long[trailer.getInt()];
+					
+					for(int i=0;i<hashes.length;i++)
+						hashes[i]=trailer.getLong();
+				}
+				else if(tag==ReplayWriter.START)
+				{
+					startTime=trailer.getInt();
+					partial=true;
+				}
+				else if(tag==ReplayWriter.DEATHS)
+				{
+					deaths=new int[length/4];
+					
+					for(int i=0;i<deaths.length;i++)
+						deaths[i]=trailer.getInt();
+				}
+				else if(tag==ReplayWriter.SUMMARY)
+				{
+					summary=new int[length/4];
+					
+					for(int i=0;i<summary.length;i++)
+						summary[i]=trailer.getInt();
+				}
+				
+				trailer.position(next);
+			}
+		}
+		
+		void loadKeyframe(int index,G game)
+		{
+			ByteBuffer state=buffer.duplicate();
+			state.position(keyframeOffsets[index]);
+			game.loadState(state);
+		}
+		
+		private static String getString(ByteBuffer buffer)
+		{
+			byte[] bytes=new byte[buffer.getShort()];
+			buffer.get(bytes);
+			
+			return new String(bytes,UTF8);
+		}
+		
+		public int getAction(int time,int agent)
+		{
+			if(!hasFrame(time))
+				return -1;
+			
+			return ReplayWriter.unpack(buffer.getShort(framesOffset+(time-startTime)*ReplayWriter.FRAME_SIZE),agent);
+		}
+		
+		public boolean hasFrame(int time)
+		{
+			return time>=startTime && time-startTime<numFrames;
+		}
+		
+		public void close() throws IOException
+		{
+			file.close();
+		}
+	}
+	
+	/*
+	 * Reads the text format one line at a time. Frames are expected in order: going back in time re-opens the file.
+	 */
+	private static final class TextReader extends ReplayReader
+	{
+		private final File file;
+		private final int[] frame=new int[G.NUM_GHOSTS+1];
+		private BufferedReader br;
+		private int time=-1;
+		private boolean finished;
+		
+		private TextReader(File file) throws IOException
+		{
+			this.file=file;
+			rewind();
+		}
+		
+		private void rewind() throws IOException
+		{
+			if(br!=null)
+				br.close();
+			
+			br=new BufferedReader(new InputStreamReader(new FileInputStream(file)));
+			time=-1;
+			finished=false;
+		}
+		
+		//Moves to the time step specified; returns false if the replay ends before
+		private boolean moveTo(int time) throws IOException
+		{
+			if(time<this.time)
+				rewind();
+			
+			while(this.time<time && !finished)
+			{
+				String input=br.readLine();
+				
+				if(input==null || input.length()==0)
+					finished=true;
+				else if(parse(input))
+					this.time++;
+			}
+			
+			return this.time==time;
+		}
+		
+		//Parses a line of the form 'time  pacman  ghost1 ... ghost4' (tab-separated); returns false for comments
+		private boolean parse(String input)
+		{
+			int index=0;
+			int field=-1;		//the first field is the time step, which is implied by the order of the lines
+			
+			while(index<input.length() && field<frame.length)
+			{
+				while(index<input.length() && Character.isWhitespace(input.charAt(index)))
+					index++;
+				
+				if(index==input.length())
+					break;
+				
+				if(input.charAt(index)=='#')
+				{
+					if(input.startsWith(Replay.SUMMARY,index))
+						parseSummary(input,index+Replay.SUMMARY.length());
+					
+					return false;
+				}
+				
+				boolean negative=input.charAt(index)=='-';
+				
+				if(negative)
+					index++;
+				
+				int value=0;
+				
+				while(index<input.length() && Character.isDigit(input.charAt(index)))
+					value=value*10+(input.charAt(index++)-'0');
+				
+				if(field>=0)
+					frame[field]=negative ? -value : value;
+				
+				field++;
+			}
+			
+			return true;
+		}
+		
+		//Parses the outcome of the game, stored as a comment (see Replay.getSummary(-))
+		private void parseSummary(String input,int index)
+		{
+			String[] numbers=input.substring(index).trim().split("\t");
+			summary=new int[numbers.length];
+			
+			for(int i=0;i<numbers.length;i++)
+				summary[i]=Integer.parseInt(numbers[i]);
+		}
+		
+		public int getAction(int time,int agent) throws IOException
+		{
+			return moveTo(time) ? frame[agent] : -1;
+		}
+		
+		public boolean hasFrame(int time) throws IOException
+		{
+			return time>=0 && moveTo(time);
+		}
+		
+		public void close() throws IOException
+		{
+			br.close();
+		}
+	}
+}
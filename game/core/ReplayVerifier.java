@@ -0,0 +1,295 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Checks that replays still reproduce the games they recorded, e.g., after the engine has been changed. Every
+ * replay is played headless (no view, no delays) with _RG_ and the following is checked:
+ * 
+ * 1. every recorded action is legal in the state it is applied to (an illegal one means the game has diverged)
+ * 2. the state matches every keyframe stored in the replay
+ * 3. the game ends exactly when the recorded actions do (unless the replay is partial, see FlightRecorder)
+ * 4. the final score, level, time and lives match the summary of the replay, if there is one
+ * 5. the states match the chained hashes stored in the replay, if there are any (see ReplayWriter)
+ * 
+ * A check may only fail long after the game has diverged (e.g., the outcome at the end of the game). The first
+ * divergent time step lies after the last keyframe or hash that matched and no later than the first one that did
+ * not, or than the time step at which a check failed; with hashes, this bounds it to HASH_INTERVAL time steps.
+ * Both bounds are reported along with the time step at which the divergence was detected. Replays are verified
+ * in parallel, one per thread.
+ */
+public final class ReplayVerifier
+{
+	private final int numThreads;
+	
+	public ReplayVerifier(int numThreads)
+	{
+		this.numThreads=numThreads;
+	}
+	
+	//Verifies all replays (text or binary) in the directory specified
+	public List<Result> verifyDirectory(String directory) throws InterruptedException
+	{
+		return verifyAll(listReplays(directory));
+	}
+	
+	//The replays (text or binary) in the directory specified, sorted by name
+	static List<String> listReplays(String directory)
+	{
+		File[] files=new File(directory).listFiles();
+		List<String> fileNames=new ArrayList<String>();
+		
+		if(files!=null)
+		{
+			Arrays.sort(files);
+			
+			for(File file : files)
+				if(file.isFile() && (ReplayWriter.isBinary(file.getName()) || file.getName().endsWith(".txt")))
+					fileNames.add(file.getPath());
+		}
+		
+		return fileNames;
+	}
+	
+	//Verifies the replays specified in parallel; the results are in the same order as the file names
+	public List<Result> verifyAll(List<String> fileNames) throws InterruptedException
+	{
+		ExecutorService executor=Executors.newFixedThreadPool(numThreads);
+		List<Future<Result>> futures=new ArrayList<Future<Result>>(fileNames.size());
+		
+		try
+		{
+			for(final String fileName : fileNames)
+				futures.add(executor.submit(new Callable<Result>()
+				{
+					public Result call()
+					{
+						return verify(fileName);
+					}
+				}));
+			
+			List<Result> results=new ArrayList<Result>(futures.size());
+			
+			for(int i=0;i<futures.size();i++)
+			{
+				try
+				{
+					results.add(futures.get(i).get());
+				}
+				catch(Exception e)
+				{
+					results.add(new Result(fileNames.get(i),false,0,-1,-1,-1,e.toString()));
+				}
+			}
+			
+			return results;
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+	
+	//Verifies a single replay
+	public static Result verify(String fileName)
+	{
+		ReplayReader reader=null;
+		
+		try
+		{
+			reader=ReplayReader.open(fileName);
+			
+			_RG_ game=new _RG_();
+			game.newGame();
+			
+			if(reader.isPartial())
+				reader.loadKeyframe(0,game);
+			
+			G keyframe=new G();
+			ByteBuffer expected=ByteBuffer.allocate(1<<10),actual=ByteBuffer.allocate(1<<10);
+			int[] ghostActions=new int[G.NUM_GHOSTS];
+			int nextKeyframe=0;
+			
+			//the hashes are chained from the start of the game, so partial replays have none
+			int hashInterval=reader.isPartial() ? 0 : reader.getHashInterval();
+			long hash=0;
+			
+			//bounds of the first divergent time step: after lastMatch, no later than firstMismatch
+			int lastMatch=game.getTotalTime(),firstMismatch=-1;
+			
+			while(!game.gameOver() && reader.hasFrame(game.getTotalTime()))
+			{
+				int time=game.getTotalTime();
+				
+				while(nextKeyframe<reader.getNumKeyframes() && reader.getKeyframeTime(nextKeyframe)<time)
+					nextKeyframe++;
+				
+				if(nextKeyframe<reader.getNumKeyframes() && reader.getKeyframeTime(nextKeyframe)==time)
+				{
+					reader.loadKeyframe(nextKeyframe++,keyframe);
+					
+					if(!equalStates(keyframe,game,expected,actual))
+						return new Result(fileName,false,time,lastMatch,firstMismatch,time,"state differs from the keyframe");
+					
+					if(firstMismatch==-1)
+						lastMatch=time;
+				}
+				
+				int pacManAction=reader.getAction(time,0);
+				reader.getGhostActions(time,ghostActions);
+				
+				String illegal=checkActions(game,pacManAction,ghostActions);
+				
+				if(illegal!=null)
+					return new Result(fileName,false,time,lastMatch,firstMismatch,time,illegal);
+				
+				game.advanceGame(pacManAction,ghostActions);
+				
+				if(hashInterval>0)
+				{
+					hash=ReplayWriter.chain(hash,game.hashState());
+					int index=game.getTotalTime()/hashInterval-1;
+					
+					if(game.getTotalTime()%hashInterval==0 && index<reader.getNumHashes() && firstMismatch==-1)
+					{
+						if(reader.getHash(index)==hash)
+							lastMatch=game.getTotalTime();
+						else
+							firstMismatch=game.getTotalTime();
+					}
+				}
+			}
+			
+			int time=game.getTotalTime();
+			
+			if(reader.hasFrame(time))
+				return new Result(fileName,false,time,lastMatch,firstMismatch,time,"game over with actions remaining");
+			
+			if(!game.gameOver() && !reader.isPartial())
+				return new Result(fileName,false,time,lastMatch,firstMismatch,time,"actions ran out before the end of the game");
+			
+			if(reader.hasSummary() && (reader.getFinalScore()!=game.getScore() || reader.getFinalLevel()!=game.getCurLevel() 
+					|| reader.getFinalTime()!=time || reader.getFinalLivesRemaining()!=game.getLivesRemaining()))
+				return new Result(fileName,false,time,lastMatch,firstMismatch,time,"outcome differs: recorded "+reader.getFinalScore()+" points, level "+(reader.getFinalLevel()+1)
+						+", replayed "+game.getScore()+" points, level "+(game.getCurLevel()+1));
+			
+			if(firstMismatch!=-1)
+				return new Result(fileName,false,time,lastMatch,firstMismatch,firstMismatch,"state differs from the recorded hashes");
+			
+			return new Result(fileName,true,time,-1,-1,-1,reader.hasSummary() ? null : "no summary: only the actions were checked");
+		}
+		catch(Exception e)
+		{
+			return new Result(fileName,false,0,-1,-1,-1,e.toString());
+		}
+		finally
+		{
+			if(reader!=null)
+				try{reader.close();}catch(IOException e){}
+		}
+	}
+	
+	//Returns a description of the first recorded action that cannot be taken in the current state, null if there is none.
+	//Ghosts in the lair and edible ghosts that stand still in this time step keep their last direction, which need not be legal
+	private static String checkActions(G game,int pacManAction,int[] ghostActions)
+	{
+		if(pacManAction>=0 && pacManAction<4 && game.getNeighbour(game.getCurPacManLoc(),pacManAction)==-1)
+			return "illegal action "+pacManAction+" for Ms Pac-Man";
+		
+		for(int i=0;i<ghostActions.length;i++)
+		{
+			int edibleTime=game.getEdibleTime(i);
+			
+			if(game.getLairTime(i)>0 || (edibleTime>0 && edibleTime%G.GHOST_SPEED_REDUCTION==0))
+				continue;
+			
+			if(ghostActions[i]>=0 && ghostActions[i]<4 && game.getNeighbour(game.getCurGhostLoc(i),ghostActions[i])==-1)
+				return "illegal action "+ghostActions[i]+" for ghost "+(i+1);
+		}
+		
+		return null;
+	}
+	
+	private static boolean equalStates(G expected,G actual,ByteBuffer expectedState,ByteBuffer actualState)
+	{
+		expectedState.clear();
+		actualState.clear();
+		expected.saveState(expectedState);
+		actual.saveState(actualState);
+		expectedState.flip();
+		actualState.flip();
+		
+		return expectedState.equals(actualState);
+	}
+	
+	/*
+	 * The outcome of verifying a replay
+	 */
+	public static final class Result
+	{
+		public final String fileName;
+		public final boolean valid;				//whether the replay passed all checks
+		public final int numFrames;				//number of time steps replayed
+		public final int firstDivergentTime;	//earliest time step at which the replay may have diverged, -1 if it did not
+		public final int lastDivergentTime;		//latest time step by which it had diverged, -1 if it did not
+		public final int detectedTime;			//time step at which the divergence was detected, -1 if it was not
+		public final String message;			//reason for the divergence or error, or a remark; null if all checks passed
+		
+		/*
+		 * The first divergent time step lies after lastMatch (the last keyframe or hash that matched) and no later
+		 * than firstMismatch (the first hash that did not match, -1 if there is none) or detectedTime.
+		 */
+		public Result(String fileName,boolean valid,int numFrames,int lastMatch,int firstMismatch,int detectedTime,String message)
+		{
+			this.fileName=fileName;
+			this.valid=valid;
+			this.numFrames=numFrames;
+			this.detectedTime=detectedTime;
+			this.message=message;
+			
+			if(detectedTime<0)
+			{
+				this.firstDivergentTime=-1;
+				this.lastDivergentTime=-1;
+			}
+			else
+			{
+				this.firstDivergentTime=lastMatch+1;
+				this.lastDivergentTime=firstMismatch>=0 ? Math.min(firstMismatch,detectedTime) : detectedTime;
+			}
+		}
+		
+		public String toString()
+		{
+			String divergence="";
+			
+			if(detectedTime>=0)
+				divergence=firstDivergentTime==lastDivergentTime ? "\tdiverged at "+firstDivergentTime 
+						: "\tdiverged between "+firstDivergentTime+" and "+lastDivergentTime+", detected at "+detectedTime;
+			
+			return fileName+"\t"+(valid ? "OK" : "FAILED")+"\t"+numFrames+divergence+(message!=null ? "\t"+message : "");
+		}
+	}
+}
@@ -0,0 +1,386 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/*
+ * Writes replays in the compact binary format (files ending in BINARY_EXTENSION) while the game is being played.
+ * The file starts with a header, followed by one frame per time step and a trailer:
+ * 
+ *   int    MAGIC
+ *   short  VERSION
+ *   int    number of frames (-1 until the writer is closed)
+ *   long   offset of the trailer (0 until the writer is closed)
+ *   long   seed of the game (0 if unknown)
+ *   byte   maze the game started in
+ *   string name of the Ms Pac-Man controller (short length followed by UTF-8 bytes)
+ *   string name of the ghost controller
+ *   short  frames: the 5 actions taken (see advanceGame(-)), 3 bits each, Ms Pac-Man in the lowest bits
+ *   trailer: sections (byte tag, int length, payload) terminated by END
+ * 
+ * Frames are buffered and written through a file channel, so a game costs 2 bytes per time step and a
+ * write every BUFFER_SIZE/2 time steps. If the game is supplied along with the actions, the complete state
+ * is recorded every KEYFRAME_INTERVAL time steps and at the start of every level. The keyframes are kept in
+ * memory and stored in the trailer (section KEYFRAMES: int count, then int time, short length and the state
+ * for each keyframe), so that the replay may be started at any time step (see ReplayPlayer). The outcome of the
+ * game may be stored as well (section SUMMARY: int score, level, time and lives), which is what ReplayVerifier
+ * checks the replay against. Finally, a hash of the state is chained over all time steps and stored every
+ * HASH_INTERVAL time steps (section HASHES: int interval, int count and the hashes), so that the first time step
+ * at which two replays differ may be found by binary search (see ReplayDiff). Along with the summary, the number
+ * of lives lost in every level is stored (section DEATHS) for the catalog of replays (see ReplayCatalog).
+ * A replay may hold only part of a game (see FlightRecorder): the time step of the first frame is then stored
+ * (section START) and the replay starts from its first keyframe, which must be taken at that time.
+ */
+public final class ReplayWriter
+{
+	public static final String BINARY_EXTENSION=".mpr";
+	public static final int MAGIC=0x4D505231;			//"MPR1"
+	public static final short VERSION=1;
+	public static final int FRAME_COUNT_OFFSET=6;
+	public static final int TRAILER_OFFSET=10;
+	public static final int FRAME_SIZE=2;
+	public static final int BITS_PER_ACTION=3;
+	public static final int NO_ACTION=(1<<BITS_PER_ACTION)-1;	//stored for directions outside 0..6
+	public static final byte END=0;						//tag that terminates the trailer
+	public static final byte KEYFRAMES=1;				//tag of the section that holds the keyframes
+	public static final byte SUMMARY=2;					//tag of the section that holds the outcome of the game
+	public static final byte HASHES=3;					//tag of the section that holds the chained hashes of the state
+	public static final int HASH_INTERVAL=64;			//number of time steps between the hashes stored
+	public static final byte DEATHS=4;					//tag of the section that holds the number of lives lost in each level
+	public static final byte START=5;					//tag of the section that holds the time step of the first frame
+	public static final int KEYFRAME_INTERVAL=1000;		//default number of time steps between keyframes
+	
+	private static final int BUFFER_SIZE=1<<16;
+	private static final Charset UTF8=Charset.forName("UTF-8");
+	
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private int numFrames,startTime=-1;	//no START section unless the replay only holds part of a game
+	
+	private ByteBuffer keyframes=ByteBuffer.allocate(1<<12);
+	private int numKeyframes,keyframeInterval=KEYFRAME_INTERVAL,lastLevel=-1;
+	private int[] summary;
+	
+	private long hash;
+	private long[] hashes=new long[1<<8];
+	private int numHashes;
+	private boolean hashing=true;	//only if the game has been supplied for every frame
+	
+	private int[] deaths=new int[G.MAX_LEVELS];
+	private int lastLives=-1;
+	
+	//Creates the file (overwriting any existing one) and writes the header
+	public ReplayWriter(String fileName,long seed,int maze,String pacManName,String ghostName) throws IOException
+	{
+		this.file=new RandomAccessFile(fileName,"rw");
+		this.channel=file.getChannel();
+		this.buffer=ByteBuffer.allocateDirect(BUFFER_SIZE);
+		
+		file.setLength(0);
+		
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putInt(-1);
+		buffer.putLong(0);
+		buffer.putLong(seed);
+		buffer.put((byte)maze);
+		putString(pacManName);
+		putString(ghostName);
+	}
+	
+	//Whether the file name supplied denotes a binary replay
+	public static boolean isBinary(String fileName)
+	{
+		return fileName.endsWith(BINARY_EXTENSION);
+	}
+	
+	//Packs the actions taken in a time step (as returned by advanceGame(-)) into a frame
+	public static short pack(int[] actionsTaken)
+	{
+		int frame=0;
+		
+		for(int i=0;i<actionsTaken.length;i++)
+		{
+			int action=actionsTaken[i]>=0 && actionsTaken[i]<NO_ACTION ? actionsTaken[i] : NO_ACTION;
+			frame|=action<<(i*BITS_PER_ACTION);
+		}
+		
+		return (short)frame;
+	}
+	
+	//Returns the action of the agent specified (0 for Ms Pac-Man, 1-4 for the ghosts) stored in a frame
+	public static int unpack(int frame,int agent)
+	{
+		int action=(frame>>>(agent*BITS_PER_ACTION))&NO_ACTION;
+		
+		return action==NO_ACTION ? -1 : action;
+	}
+	
+	//Appends the actions taken in the last time step
+	public void writeFrame(int[] actionsTaken) throws IOException
+	{
+		hashing=false;
+		appendFrame(actionsTaken);
+	}
+	
+	private void appendFrame(int[] actionsTaken) throws IOException
+	{
+		writeFrame(pack(actionsTaken));
+	}
+	
+	//Appends a frame that has already been packed (see pack(-))
+	void writeFrame(short frame) throws IOException
+	{
+		if(buffer.remaining()<FRAME_SIZE)
+			flush();
+		
+		buffer.putShort(frame);
+		numFrames++;
+	}
+	
+	//Appends the actions taken in the last time step and, if due, a keyframe of the game that results from them
+	public void writeFrame(int[] actionsTaken,Game game) throws IOException
+	{
+		appendFrame(actionsTaken);
+		
+		if(hashing)
+		{
+			hash=chain(hash,toG(game).hashState());
+			
+			if(numFrames%HASH_INTERVAL==0)
+			{
+				if(numHashes==hashes.length)
+					hashes=Arrays.copyOf(hashes,numHashes*2);
+				
+				hashes[numHashes++]=hash;
+			}
+		}
+		
+		if(game.getLivesRemaining()<lastLives && game.getCurLevel()<deaths.length)
+			deaths[game.getCurLevel()]++;
+		
+		lastLives=game.getLivesRemaining();
+		
+		if((keyframeInterval>0 && numFrames%keyframeInterval==0) || (lastLevel!=-1 && game.getCurLevel()!=lastLevel))
+			writeKeyframe(game);
+		
+		lastLevel=game.getCurLevel();
+	}
+	
+	//Records the complete state of the game supplied, which must be the state after the last frame written
+	public void writeKeyframe(Game game)
+	{
+		G g=toG(game);
+		int size=g.getStateSize();
+		
+		ensureKeyframeCapacity(size);
+		keyframes.putInt(g.getTotalTime());
+		keyframes.putShort((short)size);
+		g.saveState(keyframes);
+		numKeyframes++;
+	}
+	
+	//Records a state previously written by G.saveState(-) (from the position to the limit of the buffer supplied)
+	void writeKeyframe(int time,ByteBuffer state)
+	{
+		int size=state.remaining();
+		
+		ensureKeyframeCapacity(size);
+		keyframes.putInt(time);
+		keyframes.putShort((short)size);
+		keyframes.put(state);
+		numKeyframes++;
+	}
+	
+	private void ensureKeyframeCapacity(int size)
+	{
+		if(keyframes.remaining()<size+6)
+		{
+			ByteBuffer larger=ByteBuffer.allocate(Math.max(keyframes.capacity()*2,keyframes.position()+size+6));
+			keyframes.flip();
+			larger.put(keyframes);
+			keyframes=larger;
+		}
+	}
+	
+	//Records the outcome of the game (score, level, time and lives remaining), written when the writer is closed
+	public void writeSummary(Game game)
+	{
+		summary=new int[]{game.getScore(),game.getCurLevel(),game.getTotalTime(),game.getLivesRemaining()};
+	}
+	
+	//Combines the hash of the state in the current time step with the hashes of all previous ones
+	public static long chain(long hash,long stateHash)
+	{
+		hash=(hash^stateHash)*0x9E3779B97F4A7C15L;
+		
+		return hash^(hash>>>32);
+	}
+	
+	private static G toG(Game game)
+	{
+		if(!(game instanceof G))
+			throw new IllegalArgumentException("Only instances of G can be recorded: "+game);
+		
+		return (G)game;
+	}
+	
+	//Time step of the first frame, if the replay only holds part of a game (call before writing any frames; the first keyframe
+	//must be taken at that time)
+	void setStartTime(int startTime)
+	{
+		this.startTime=startTime;
+	}
+	
+	//Number of time steps between keyframes (0 to only record a keyframe at the start of each level)
+	public void setKeyframeInterval(int keyframeInterval)
+	{
+		this.keyframeInterval=keyframeInterval;
+	}
+	
+	public int getNumFrames()
+	{
+		return numFrames;
+	}
+	
+	//Writes the trailer, completes the header and closes the file
+	public void close() throws IOException
+	{
+		try
+		{
+			flush();
+			
+			long trailerOffset=channel.position();
+			
+			if(startTime>=0)
+			{
+				buffer.put(START);
+				buffer.putInt(4);
+				buffer.putInt(startTime);
+			}
+			
+			if(numKeyframes>0)
+			{
+				keyframes.flip();
+				buffer.put(KEYFRAMES);
+				buffer.putInt(4+keyframes.remaining());
+				buffer.putInt(numKeyframes);
+				flush();
+				
+				while(keyframes.hasRemaining())
+					channel.write(keyframes);
+			}
+			
+			if(hashing && numHashes>0)
+			{
+				buffer.put(HASHES);
+				buffer.putInt(8+numHashes*8);
+				buffer.putInt(HASH_INTERVAL);
+				buffer.putInt(numHashes);
+				
+				for(int i=0;i<numHashes;i++)
+				{
+					if(buffer.remaining()<8)
+						flush();
+					
+					buffer.putLong(hashes[i]);
+				}
+				
+				flush();
+			}
+			
+			if(summary!=null)
+			{
+				buffer.put(SUMMARY);
+				buffer.putInt(summary.length*4);
+				
+				for(int i=0;i<summary.length;i++)
+					buffer.putInt(summary[i]);
+				
+				if(lastLives!=-1)
+				{
+					buffer.put(DEATHS);
+					buffer.putInt(deaths.length*4);
+					
+					for(int i=0;i<deaths.length;i++)
+						buffer.putInt(deaths[i]);
+				}
+			}
+			
+			buffer.put(END);
+			flush();
+			
+			buffer.putInt(numFrames);
+			buffer.putLong(trailerOffset);
+			buffer.flip();
+			channel.write(buffer,FRAME_COUNT_OFFSET);
+			buffer.clear();
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+	
+	private void flush() throws IOException
+	{
+		buffer.flip();
+		
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+		
+		buffer.clear();
+	}
+	
+	private void putString(String string)
+	{
+		byte[] bytes=(string==null ? "" : string).getBytes(UTF8);
+		buffer.putShort((short)bytes.length);
+		buffer.put(bytes);
+	}
+	
+	/*
+	 * Converts a replay in the text format produced by Replay.saveActions(-) into the binary format. The text
+	 * format does not store the seed or the controllers, hence these have to be supplied.
+	 */
+	public static void convert(String textFileName,String binaryFileName,String pacManName,String ghostName) throws IOException
+	{
+		ReplayReader reader=ReplayReader.open(textFileName);
+		ReplayWriter writer=new ReplayWriter(binaryFileName,0,0,pacManName,ghostName);
+		int[] actions=new int[G.NUM_GHOSTS+1];
+		
+		try
+		{
+			for(int time=0;reader.hasFrame(time);time++)
+			{
+				for(int i=0;i<actions.length;i++)
+					actions[i]=reader.getAction(time,i);
+				
+				writer.writeFrame(actions);
+			}
+		}
+		finally
+		{
+			reader.close();
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+import game.controllers.GhostController;
+import game.controllers.PacManController;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * A replay that only stores what is needed to play the game again: the seed of the engine (see _G_.newGame(long seed)),
+ * the seed of Game.rnd and the classes of the two controllers, which are instantiated anew (using their default
+ * constructors) every time the game is played. The final score, time and level are stored as a checksum to detect
+ * games that are no longer reproduced.
+ * 
+ * This requires controllers that are deterministic apart from Game.rnd: they may not use other sources of randomness,
+ * depend on the time they are given or keep state across instances. As Game.rnd is shared, seed replays must be played
+ * one at a time. Replays are stored one per line (see toString()), so a corpus of games is a text file.
+ */
+public final class SeedReplay
+{
+	public final long engineSeed,controllerSeed;
+	public final String pacManName,ghostName;
+	public final int score,time,level;
+	
+	public SeedReplay(long engineSeed,long controllerSeed,String pacManName,String ghostName,int score,int time,int level)
+	{
+		this.engineSeed=engineSeed;
+		this.controllerSeed=controllerSeed;
+		this.pacManName=pacManName;
+		this.ghostName=ghostName;
+		this.score=score;
+		this.time=time;
+		this.level=level;
+	}
+	
+	//Plays a new game with the controllers and seeds specified and returns its replay
+	public static SeedReplay record(String pacManName,String ghostName,long engineSeed,long controllerSeed) throws IOException,ReflectiveOperationException
+	{
+		_G_ game=new SeedReplay(engineSeed,controllerSeed,pacManName,ghostName,0,0,0).play(null);
+		
+		return new SeedReplay(engineSeed,controllerSeed,pacManName,ghostName,game.getScore(),game.getTotalTime(),game.getCurLevel());
+	}
+	
+	/*
+	 * Plays the game again (without visuals or delays) and returns it at the end. If a file name is supplied, the game
+	 * is also recorded in full as a binary replay (see ReplayWriter) that may be watched or searched.
+	 */
+	public _G_ play(String fileName) throws IOException,ReflectiveOperationException
+	{
+		Game.rnd.setSeed(controllerSeed);
+		
+		PacManController pacMan=(PacManController)Class.forName(pacManName).getDeclaredConstructor().newInstance();
+		GhostController ghosts=(GhostController)Class.forName(ghostName).getDeclaredConstructor().newInstance();
+		
+		_G_ game=new _G_();
+		game.newGame(engineSeed);
+		
+		ReplayWriter writer=fileName!=null ? new ReplayWriter(fileName,engineSeed,game.getCurMaze(),pacManName,ghostName) : null;
+		
+		try
+		{
+			while(!game.gameOver())
+			{
+				Game snapshot=game.snapshot();
+				long due=System.currentTimeMillis()+G.DELAY;
+				int[] actionsTaken=game.advanceGame(pacMan.getAction(snapshot,due),ghosts.getActions(snapshot,due));
+				
+				if(writer!=null)
+					writer.writeFrame(actionsTaken,game);
+			}
+			
+			if(writer!=null)
+				writer.writeSummary(game);
+		}
+		finally
+		{
+			if(writer!=null)
+				writer.close();
+		}
+		
+		return game;
+	}
+	
+	//Returns true if the game played again ends with the same score, time and level
+	public boolean verify() throws IOException,ReflectiveOperationException
+	{
+		return matches(play(null));
+	}
+	
+	public boolean matches(Game game)
+	{
+		return game.getScore()==score && game.getTotalTime()==time && game.getCurLevel()==level;
+	}
+	
+	//engine seed, controller seed, Ms Pac-Man controller, ghost controller, score, time and level (tab-separated)
+	public String toString()
+	{
+		return engineSeed+"\t"+controllerSeed+"\t"+pacManName+"\t"+ghostName+"\t"+score+"\t"+time+"\t"+level;
+	}
+	
+	public static SeedReplay parse(String line)
+	{
+		String[] fields=line.trim().split("\t");
+		
+		return new SeedReplay(Long.parseLong(fields[0]),Long.parseLong(fields[1]),fields[2],fields[3],
+				Integer.parseInt(fields[4]),Integer.parseInt(fields[5]),Integer.parseInt(fields[6]));
+	}
+	
+	//Loads a corpus of seed replays (lines starting with # are ignored)
+	public static List<SeedReplay> load(String fileName) throws IOException
+	{
+		List<SeedReplay> replays=new ArrayList<SeedReplay>();
+		BufferedReader br=new BufferedReader(new InputStreamReader(new FileInputStream(fileName)));
+		
+		try
+		{
+			for(String input=br.readLine();input!=null;input=br.readLine())
+				if(input.trim().length()>0 && !input.startsWith("#"))
+					replays.add(parse(input));
+		}
+		finally
+		{
+			br.close();
+		}
+		
+		return replays;
+	}
+	
+	//Appends seed replays to a corpus
+	public static void save(List<SeedReplay> replays,String fileName,boolean append) throws IOException
+	{
+		PrintWriter pw=new PrintWriter(new FileOutputStream(fileName,append));
+		
+		for(SeedReplay replay : replays)
+			pw.println(replay);
+		
+		pw.close();
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Hands values from a single producer to a single consumer without locks: the producer fills its own buffer and
+ * publishes it by swapping it with the spare one; the consumer swaps its buffer with the spare one whenever a newer
+ * value has been published. Neither side ever waits for the other or sees a buffer that is being written, and the
+ * consumer always gets the latest value published (values published in between are skipped).
+ */
+final class TripleBuffer<T>
+{
+	private static final int FRESH=4;			//set on the spare index if it holds a value the consumer has not taken yet
+	private static final int INDEX=3;
+	
+	private final T[] buffers;
+	private final AtomicInteger spare=new AtomicInteger(1);
+	private int write=0,read=2;				//owned by the producer and the consumer respectively
+	
+	//The three buffers are supplied by the caller and reused
+	TripleBuffer(T first,T second,T third)
+	{
+		@SuppressWarnings("unchecked")
+		T[] buffers=(T[])new Object[]{first,second,third};
+		this.buffers=buffers;
+	}
+	
+	//The buffer the producer may fill (the same one until it is published)
+	T getWriteBuffer()
+	{
+		return buffers[write];
+	}
+	
+	//Makes the write buffer available to the consumer and hands the producer another one
+	void publish()
+	{
+		write=spare.getAndSet(write|FRESH)&INDEX;
+	}
+	
+	//Returns the latest value published if the consumer has not taken it yet, null otherwise
+	T take()
+	{
+		if((spare.get()&FRESH)==0)
+			return null;
+		
+		read=spare.getAndSet(read)&INDEX;
+		
+		return buffers[read];
+	}
+	
+	//The buffer taken last by the consumer
+	T getReadBuffer()
+	{
+		return buffers[read];
+	}
+}
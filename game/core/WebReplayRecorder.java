@@ -0,0 +1,220 @@
+/*
+ * Implementation of "Ms Pac-Man" for the "Ms Pac-Man versus Ghost Team Competition", brought
+ * to you by Philipp Rohlfshagen, David Robles and Simon Lucas of the University of Essex.
+ * 
+ * www.pacman-vs-ghosts.net
+ * 
+ * Code written by Philipp Rohlfshagen, based on earlier implementations of the game by
+ * Simon Lucas and David Robles. 
+ * 
+ * You may use and distribute this code freely for non-commercial purposes. This notice 
+ * needs to be included in all distributions. Deviations from the original should be 
+ * clearly documented. We welcome any comments and suggestions regarding the code.
+ */
+package game.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+
+/*
+ * Records games for the javascript replays on the web-site (see _G_.monitorGame()). Every frame is appended to
+ * the output as soon as it is recorded, so nothing accumulates in memory unless the output is a StringBuilder.
+ * 
+ * By default, every frame contains the state of all pills (pi, po) as expected by the web-site. The strings are
+ * only rebuilt when a pill has been eaten. In delta mode, the pills are only written in full in the first frame
+ * of every level; the other frames list the indices of the pills (pe) and power pills (oe) eaten since the
+ * previous frame, if any. Such recordings may be converted back to the full format using expand(-).
+ */
+public final class WebReplayRecorder
+{
+	private final Appendable out;
+	private final boolean deltas;
+	
+	private int pacManDir=G.INITIAL_PAC_DIR;
+	private int lastLevel=-1;
+	private G.PillSet lastPills,lastPowerPills;
+	private String pills,powerPills;
+	
+	public WebReplayRecorder(Appendable out,boolean deltas)
+	{
+		this.out=out;
+		this.deltas=deltas;
+	}
+	
+	public Appendable getOutput()
+	{
+		return out;
+	}
+	
+	//Appends the current state of the game
+	public void recordFrame(G game) throws IOException
+	{
+		out.append("{");
+		
+		//maze
+		out.append("ma:").append(Integer.toString(game.curMaze)).append(",");
+		out.append("tt:").append(Integer.toString(game.totalTime)).append(",");
+		out.append("li:").append(Integer.toString(game.livesRemaining)).append(",");
+		out.append("sc:").append(Integer.toString(game.score)).append(",");
+		out.append("lt:").append(Integer.toString(game.levelTime)).append(",");
+		out.append("le:").append(Integer.toString(game.totLevel)).append(",");
+		
+		//pacman
+		out.append("pn:").append(Integer.toString(game.curPacManLoc)).append(",");
+		
+		if(game.lastPacManDir>=0 && game.lastPacManDir<4)
+			pacManDir=game.lastPacManDir;
+		
+		out.append("pd:").append(Integer.toString(pacManDir)).append(",");
+		
+		//ghosts
+		out.append("gh:[");
+		
+		for(int i=0;i<G.NUM_GHOSTS;i++)
+		{
+			out.append(i==0 ? "{gn:" : ",{gn:").append(Integer.toString(game.curGhostLocs[i])).append(",");
+			out.append("di:").append(Integer.toString(game.lastGhostDirs[i])).append(",et:").append(Integer.toString(game.edibleTimes[i]));
+			out.append(",lt:").append(Integer.toString(game.lairTimes[i]));
+			out.append("}");
+		}
+		
+		out.append("]");
+		
+		//pills
+		boolean newLevel=game.totLevel!=lastLevel;
+		
+		if(deltas && !newLevel)
+		{
+			appendEaten("pe",lastPills,game.pills,game.getNumberPills());
+			appendEaten("oe",lastPowerPills,game.powerPills,game.getNumberPowerPills());
+		}
+		
+		if(pills==null || newLevel || game.pills!=lastPills)
+			pills=toString(game.pills,game.getNumberPills());
+		
+		if(powerPills==null || newLevel || game.powerPills!=lastPowerPills)
+			powerPills=toString(game.powerPills,game.getNumberPowerPills());
+		
+		if(!deltas || newLevel)
+			out.append(",pi:\"").append(pills).append("\",po:\"").append(powerPills).append("\"");
+		
+		out.append("},\n");
+		
+		lastLevel=game.totLevel;
+		lastPills=game.pills;
+		lastPowerPills=game.powerPills;
+	}
+	
+	//Appends the indices of the pills available before but not anymore (pill sets are persistent: unchanged if the same)
+	private void appendEaten(String name,G.PillSet before,G.PillSet after,int numPills) throws IOException
+	{
+		if(before==after)
+			return;
+		
+		boolean first=true;
+		
+		for(int i=0;i<numPills;i++)
+		{
+			if(before.get(i) && !after.get(i))
+			{
+				out.append(first ? ","+name+":[" : ",").append(Integer.toString(i));
+				first=false;
+			}
+		}
+		
+		if(!first)
+			out.append("]");
+	}
+	
+	private static String toString(G.PillSet pills,int numPills)
+	{
+		char[] chars=new char[numPills];
+		
+		for(int i=0;i<numPills;i++)
+			chars[i]=pills.get(i) ? '1' : '0';
+		
+		return new String(chars);
+	}
+	
+	/*
+	 * Converts a recording made in delta mode to the full format used by the web-site, one frame at a time
+	 */
+	public static void expand(BufferedReader in,Writer out) throws IOException
+	{
+		char[] pills=new char[0],powerPills=new char[0];
+		String input;
+		
+		while((input=in.readLine())!=null)
+		{
+			int pillsIndex=input.indexOf(",pi:\"");
+			
+			if(pillsIndex>=0)
+			{
+				int powerPillsIndex=input.indexOf(",po:\"",pillsIndex);
+				pills=input.substring(pillsIndex+5,input.indexOf('"',pillsIndex+5)).toCharArray();
+				powerPills=input.substring(powerPillsIndex+5,input.indexOf('"',powerPillsIndex+5)).toCharArray();
+				
+				out.write(input);
+				out.write("\n");
+				
+				continue;
+			}
+			
+			int end=input.lastIndexOf('}');
+			
+			if(end<0)
+			{
+				out.write(input);
+				out.write("\n");
+				
+				continue;
+			}
+			
+			int pillsEaten=clearEaten(input,",pe:[",pills);
+			int powerPillsEaten=clearEaten(input,",oe:[",powerPills);
+			
+			if(pillsEaten>=0)
+				end=pillsEaten;
+			
+			if(powerPillsEaten>=0 && powerPillsEaten<end)
+				end=powerPillsEaten;
+			
+			out.write(input,0,end);
+			out.write(",pi:\"");
+			out.write(pills);
+			out.write("\",po:\"");
+			out.write(powerPills);
+			out.write("\"},\n");
+		}
+		
+		out.flush();
+	}
+	
+	//Clears the pills listed under the name supplied; returns where the list starts in the frame, -1 if there is none
+	private static int clearEaten(String frame,String name,char[] pills)
+	{
+		int start=frame.indexOf(name);
+		
+		if(start<0)
+			return -1;
+		
+		int index=start+name.length();
+		int value=0;
+		
+		for(char c=frame.charAt(index);c!=']';c=frame.charAt(++index))
+		{
+			if(c==',')
+			{
+				pills[value]='0';
+				value=0;
+			}
+			else
+				value=value*10+(c-'0');
+		}
+		
+		pills[value]='0';
+		
+		return start;
+	}
+}
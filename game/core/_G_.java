@@ -13,23 +13,33 @@
  */
 package game.core;
 
-import java.util.BitSet;
+import java.io.IOException;
 
 public class _G_ extends G
 {
 	public static final int EDIBLE_ALERT=30;	//for display only (ghosts turning blue)
 	
 	//to save replays
-	private int pacManDir=G.INITIAL_PAC_DIR;
-	private StringBuilder sb;
+	private WebReplayRecorder recorder=new WebReplayRecorder(new StringBuilder(),false);
+	private long initialSeed;
+	private FlightRecorder flightRecorder;
 	
 	public _G_(){}
 	
 	//Instantiates everything to start a new game
 	public void newGame()
+	{
+		newGame(rnd.nextLong());
+	}
+	
+	//Starts a new game whose random events are determined by the seed supplied
+	public void newGame(long seed)
 	{	
 		init();		//load mazes if not yet loaded
 		
+		this.initialSeed=seed;
+		this.seed=scramble(seed);
+		
 		curMaze=0;
 		
 		curGhostLocs=new int[G.NUM_GHOSTS];
@@ -37,10 +47,8 @@ public class _G_ extends G
 		edibleTimes=new int[G.NUM_GHOSTS];
 		lairTimes=new int[G.NUM_GHOSTS];
 
-		pills=new BitSet(getNumberPills());
-		pills.set(0,getNumberPills());
-		powerPills=new BitSet(getNumberPowerPills());
-		powerPills.set(0,getNumberPowerPills());
+		pills=new PillSet(getNumberPills());
+		powerPills=new PillSet(getNumberPowerPills());
 		score=0;
 		levelTime=0;
 		totalTime=0;
@@ -52,7 +60,37 @@ public class _G_ extends G
 		reset(false);
 		
 		//for replays
-		this.sb=new StringBuilder();
+		this.recorder=new WebReplayRecorder(new StringBuilder(),false);
+		
+		if(flightRecorder!=null)
+			flightRecorder.start(this);
+	}
+	
+	//Advances the game and, if a flight recorder is attached, records the actions taken
+	public int[] advanceGame(int pacManDir,int[] ghostDirs)
+	{
+		int[] actionsTaken=super.advanceGame(pacManDir,ghostDirs);
+		
+		if(flightRecorder!=null)
+			flightRecorder.record(actionsTaken,this);
+		
+		return actionsTaken;
+	}
+	
+	//The seed the game was started with (see newGame(long seed))
+	public long getSeed()
+	{
+		return initialSeed;
+	}
+	
+	//Keeps the last time steps of this game (and the following games) in the recorder supplied (null to stop); if set
+	//before newGame(), recording starts with the new game
+	public void setFlightRecorder(FlightRecorder flightRecorder)
+	{
+		this.flightRecorder=flightRecorder;
+		
+		if(flightRecorder!=null && pills!=null)
+			flightRecorder.start(this);
 	}
 	
 	//Size of the Maze (for display only)
@@ -70,70 +108,25 @@ public class _G_ extends G
 	//for the web-site javascript replays
     public void monitorGame()
     {
-        sb.append("{");
-
-        //maze
-        sb.append("ma:"+curMaze+",");
-        sb.append("tt:"+totalTime+",");
-        sb.append("li:"+livesRemaining+",");
-        sb.append("sc:"+score+",");
-        sb.append("lt:"+levelTime+",");
-        sb.append("le:"+totLevel+",");
-        
-        // pacman
-        sb.append("pn:"+curPacManLoc+",");
-        
-        int pacDir=lastPacManDir;
-        
-    	if(pacDir>=0 && pacDir<4)
-    		pacManDir=pacDir;
-        
-        sb.append("pd:"+pacManDir+",");
-        
-        // ghosts
-        sb.append("gh:[");
-        sb.append("{gn:"+curGhostLocs[0]+",");
-        sb.append("di:"+lastGhostDirs[0]+",et:"+edibleTimes[0]);
-        sb.append(",lt:"+lairTimes[0]);
-        sb.append("},");
-        sb.append("{gn:"+curGhostLocs[1]+",");
-        sb.append("di:"+lastGhostDirs[1]+",et:"+edibleTimes[1]);
-        sb.append(",lt:"+lairTimes[1]);
-        sb.append("},");
-        sb.append("{gn:"+curGhostLocs[2]+",");
-        sb.append("di:"+lastGhostDirs[2]+",et:"+edibleTimes[2]);
-        sb.append(",lt:"+lairTimes[2]);
-        sb.append("},");
-        sb.append("{gn:"+curGhostLocs[3]+",");
-        sb.append("di:"+lastGhostDirs[3]+",et:"+edibleTimes[3]);
-        sb.append(",lt:"+lairTimes[3]);
-        sb.append("}");
-        sb.append("],");
-
-        // pills
-        sb.append("pi:\"");
-
-        for (int i = 0; i < getPillIndices().length; i++)
-            if(checkPill(i))
-                sb.append("1");
-            else
-                sb.append("0");
-
-        sb.append("\",");
-        sb.append("po:\"");
-
-        for (int i = 0; i < getPowerPillIndices().length; i++)
-            if(checkPowerPill(i))
-                sb.append("1");
-            else
-                sb.append("0");
-
-        sb.append("\"");
-        sb.append("},\n");
+    	try
+    	{
+    		recorder.recordFrame(this);
+    	}
+    	catch(IOException ioe)
+    	{
+    		ioe.printStackTrace();
+    	}
+    }
+    
+    //Streams the frames recorded by monitorGame() to the recorder supplied instead of keeping them in memory (call after newGame())
+    public void setRecorder(WebReplayRecorder recorder)
+    {
+    	this.recorder=recorder;
     }
     
+    //Returns the frames recorded by monitorGame(), unless they were streamed elsewhere (see setRecorder(-))
     public StringBuilder getRecordedMatch()
     {
-    	return sb;
+    	return recorder.getOutput() instanceof StringBuilder ? (StringBuilder)recorder.getOutput() : null;
     }
 }
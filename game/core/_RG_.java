@@ -2,16 +2,30 @@ package game.core;
 
 /*
  * This class is to replay games that were recorded using Replay. The only differences are:
- * 1. Ghost reversals are removed
+ * 1. Ghost reversals are not random: they are recognised from the recorded directions
  * 2. Directions are not checked (since they are necessarily valid)
  * This class should only be used in conjunction with stored directions, not to play the game itself.
  */
 public final class _RG_ extends _G_
 {	
-	//Updates the locations of the ghosts without reversals
+	//Updates the locations of the ghosts, reversing them if (and only if) they were reversed in the recorded game
 	protected void updateGhosts(int[] directions,boolean reverse)
 	{
-		super.updateGhosts(directions,false);
+		super.updateGhosts(directions,isReversal(directions));
+	}
+	
+	//Ghosts can only reverse during a reversal event, which applies to all ghosts outside the lair. Ghosts that are
+	//edible stand still every other time step unless reversed, so reversals must be applied as such to be replayed
+	private boolean isReversal(int[] directions)
+	{
+		if(directions==null)
+			return false;
+		
+		for(int i=0;i<directions.length;i++)
+			if(lairTimes[i]==0 && directions[i]==getReverse(lastGhostDirs[i]))
+				return true;
+		
+		return false;
 	}
 	
 	public int checkGhostDir(int whichGhost,int direction)